@@ -0,0 +1,107 @@
+package org.easy.search.analysis.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.util.Version;
+import org.easy.search.analysis.PinyinNGramTokenFilterFactory;
+import org.easy.search.analysis.PinyinTransformNGramTokenFilterFactory;
+import org.easy.search.analysis.PinyinTransformTokenFilterFactory;
+
+/**
+ * 可重复使用的分析链，与README中schema配置一致：空格分词、转小写，再接拼音过滤器
+ */
+final class AnalysisChain {
+
+	private final Tokenizer tokenizer;
+
+	private final TokenStream stream;
+
+	private AnalysisChain(Tokenizer tokenizer, TokenStream stream) {
+		this.tokenizer = tokenizer;
+		this.stream = stream;
+	}
+
+	private AnalysisChain(PinyinTransformTokenFilterFactory transform, PinyinNGramTokenFilterFactory ngram) {
+		this.tokenizer = new WhitespaceTokenizer();
+		TokenStream stream = new LowerCaseFilter(this.tokenizer);
+		if (transform != null) {
+			stream = transform.create(stream);
+		}
+		if (ngram != null) {
+			stream = ngram.create(stream);
+		}
+		this.stream = stream;
+	}
+
+	static AnalysisChain transform(String outputFormat, int mixShort) {
+		return new AnalysisChain(transformFactory(outputFormat, mixShort), null);
+	}
+
+	static AnalysisChain ngram(String outputDirection) {
+		return new AnalysisChain(null, ngramFactory(outputDirection));
+	}
+
+	static AnalysisChain chained(String outputFormat, int mixShort, String outputDirection) {
+		return new AnalysisChain(transformFactory(outputFormat, mixShort), ngramFactory(outputDirection));
+	}
+
+	static AnalysisChain fused(String outputFormat, int mixShort, String outputDirection) {
+		Map<String, String> args = new HashMap<String, String>();
+		args.put("luceneMatchVersion", Version.LATEST.toString());
+		args.put("minTerm", "1");
+		args.put("outputFormat", outputFormat);
+		args.put("outOriginal", "false");
+		args.put("mixShort", String.valueOf(mixShort));
+		args.put("minGram", "1");
+		args.put("maxGram", "20");
+		args.put("outputDirection", outputDirection);
+		PinyinTransformNGramTokenFilterFactory factory = new PinyinTransformNGramTokenFilterFactory(args);
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		return new AnalysisChain(tokenizer, factory.create(new LowerCaseFilter(tokenizer)));
+	}
+
+	private static PinyinTransformTokenFilterFactory transformFactory(String outputFormat, int mixShort) {
+		Map<String, String> args = new HashMap<String, String>();
+		args.put("luceneMatchVersion", Version.LATEST.toString());
+		args.put("minTerm", "1");
+		args.put("outputFormat", outputFormat);
+		args.put("outOriginal", "false");
+		args.put("mixShort", String.valueOf(mixShort));
+		return new PinyinTransformTokenFilterFactory(args);
+	}
+
+	private static PinyinNGramTokenFilterFactory ngramFactory(String outputDirection) {
+		Map<String, String> args = new HashMap<String, String>();
+		args.put("luceneMatchVersion", Version.LATEST.toString());
+		args.put("minGram", "1");
+		args.put("maxGram", "20");
+		args.put("outputDirection", outputDirection);
+		return new PinyinNGramTokenFilterFactory(args);
+	}
+
+	/**
+	 * 分析一篇语料
+	 *
+	 * @param text
+	 *            语料
+	 * @return 输出的词元个数
+	 */
+	long analyze(String text) throws IOException {
+		this.tokenizer.setReader(new StringReader(text));
+		this.stream.reset();
+		long count = 0;
+		while (this.stream.incrementToken()) {
+			count++;
+		}
+		this.stream.end();
+		this.stream.close();
+		return count;
+	}
+}
@@ -0,0 +1,79 @@
+package org.easy.search.analysis.benchmark;
+
+import java.util.Random;
+
+import org.easy.search.analysis.PinyinCharTable;
+
+/**
+ * 合成测试语料。
+ * <p>
+ * 由常用单音字和常用多音字按指定比例随机组成固定长度的中文词元，以空格分隔。相同参数生成的语料相同。
+ */
+public final class Corpus {
+
+	/**
+	 * 常用单音字
+	 */
+	static final String MONOPHONES = "一是在有人中为上个国我以要他时来用们生到作于出就分对成可主发年动同工也能下过子产面而方后多定学法所民经十三之进等部电力里如水化高自二理起小物现实加量两制机当使点从业本去把性好应开它因由些然前外天政四日社义事平形相全表间样与关各新线内正心反你明看原又利比或但质气第向道命此变条只结问意建月公军很情者最立代想已通并直题党程展五果料象位入常文总次品式活设及管特件求老头基资边流路级少图山统接知较组计别她手根论运农指几九放决西干做必战先回则任取据处府研";
+
+	/**
+	 * 常用多音字
+	 */
+	static final String POLYPHONES = "的不了和这大地会说种行得着度家都体合还其那重数么没解无系提员革长将见角期区强被";
+
+	/**
+	 * 每篇语料的词元个数
+	 */
+	public static final int TOKENS = 1000;
+
+	private Corpus() {
+	}
+
+	/**
+	 * 生成中文语料
+	 *
+	 * @param seed
+	 *            随机种子
+	 * @param polyphoneDensity
+	 *            多音字比例，取值范围[0, 1]
+	 * @param termLength
+	 *            词元字数
+	 * @return 以空格分隔的{@link #TOKENS}个词元
+	 */
+	public static String chinese(long seed, double polyphoneDensity, int termLength) {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder(TOKENS * (termLength + 1));
+		for (int i = 0; i < TOKENS; i++) {
+			for (int j = 0; j < termLength; j++) {
+				String pool = random.nextDouble() < polyphoneDensity ? POLYPHONES : MONOPHONES;
+				sb.append(pool.charAt(random.nextInt(pool.length())));
+			}
+			sb.append(' ');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 生成全拼语料，每个字取常用读音，作为拼音NGram过滤器的输入
+	 *
+	 * @param seed
+	 *            随机种子
+	 * @param termLength
+	 *            词元字数
+	 * @return 以空格分隔的{@link #TOKENS}个全拼词元
+	 */
+	public static String pinyin(long seed, int termLength) {
+		PinyinCharTable table = PinyinCharTable.getInstance();
+		String chinese = chinese(seed, 0, termLength);
+		StringBuilder sb = new StringBuilder(chinese.length() * 4);
+		for (int i = 0; i < chinese.length(); i++) {
+			char c = chinese.charAt(i);
+			if (table.getReadingCount(c) > 0) {
+				sb.append(table.getSyllable(table.getReading(c, 0)));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
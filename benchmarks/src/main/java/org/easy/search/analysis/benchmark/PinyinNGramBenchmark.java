@@ -0,0 +1,53 @@
+package org.easy.search.analysis.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PinyinNGramTokenFilter基准，输入为全拼语料，每次操作为一个输入词元
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PinyinNGramBenchmark {
+
+	@Param({ "front", "back", "both" })
+	public String outputDirection;
+
+	@Param({ "2", "4", "8" })
+	public int termLength;
+
+	private AnalysisChain chain;
+
+	private String text;
+
+	@Setup
+	public void setup() {
+		this.chain = AnalysisChain.ngram(this.outputDirection);
+		this.text = Corpus.pinyin(42, this.termLength);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Corpus.TOKENS)
+	public long ngram(TokenCounters counters) throws IOException {
+		long emitted = this.chain.analyze(this.text);
+		counters.emitted += emitted;
+		return emitted;
+	}
+}
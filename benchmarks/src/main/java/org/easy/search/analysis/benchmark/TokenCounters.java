@@ -0,0 +1,25 @@
+package org.easy.search.analysis.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 输出词元计数，以每秒输出词元数报告
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class TokenCounters {
+
+	/**
+	 * 输出的词元个数
+	 */
+	public long emitted;
+
+	@Setup(Level.Iteration)
+	public void clean() {
+		this.emitted = 0;
+	}
+}
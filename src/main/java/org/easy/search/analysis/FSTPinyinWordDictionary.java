@@ -0,0 +1,282 @@
+package org.easy.search.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CloseableThreadLocal;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.IntSequenceOutputs;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * 基于FST的词语拼音词典，适合百万级词条。
+ * <p>
+ * 词典由{@link #main(String[])}从文本格式（见{@link MapPinyinWordDictionary}）预先编译为FST文件，
+ * 以UTF-16字符为输入、读音音节编号序列为输出。查找时在词元缓冲区上逐字符遍历FST，取最长匹配。
+ * <p>
+ * 文件中保存了编译时的音节拼写表，加载时映射为当前{@link PinyinCharTable}的音节编号。
+ * FST加载后位于堆内存中（Lucene 6.0的FST总是将文件内容复制到堆上），通过{@link #open(Path)}打开的文件
+ * 同一JVM内的多个core共享同一个实例，每个文件只占用一份堆内存。
+ */
+public final class FSTPinyinWordDictionary implements PinyinWordDictionary {
+
+	static final String CODEC_NAME = "PinyinWordDictionary";
+
+	static final int VERSION_START = 0;
+
+	static final int VERSION_CURRENT = VERSION_START;
+
+	/**
+	 * 已打开的词典文件，键为文件路径、大小及修改时间
+	 */
+	private static final ConcurrentMap<String, WeakReference<FSTPinyinWordDictionary>> OPENED = new ConcurrentHashMap<String, WeakReference<FSTPinyinWordDictionary>>();
+
+	private final FST<IntsRef> fst;
+
+	/**
+	 * 文件音节编号到当前音节编号的映射
+	 */
+	private final int[] syllableMap;
+
+	/**
+	 * 词语个数
+	 */
+	private final int size;
+
+	/**
+	 * 每个线程的遍历状态
+	 */
+	private final CloseableThreadLocal<State> states = new CloseableThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State(fst);
+		}
+	};
+
+	private FSTPinyinWordDictionary(FST<IntsRef> fst, int[] syllableMap, int size) {
+		this.fst = fst;
+		this.syllableMap = syllableMap;
+		this.size = size;
+	}
+
+	/**
+	 * 编译词典文本
+	 *
+	 * @param lines
+	 *            词典行，格式同{@link MapPinyinWordDictionary}
+	 * @return 词典
+	 * @throws IOException
+	 *             编译失败
+	 */
+	public static FSTPinyinWordDictionary compile(Iterable<String> lines) throws IOException {
+		// FST要求输入按UTF-16顺序添加，重复词语以最后一条为准
+		final TreeMap<String, int[]> words = new TreeMap<String, int[]>();
+		MapPinyinWordDictionary.parse(lines, new MapPinyinWordDictionary.EntryHandler() {
+			@Override
+			public void handle(String word, int[] ids) {
+				words.put(word, ids);
+			}
+		});
+
+		IntSequenceOutputs outputs = IntSequenceOutputs.getSingleton();
+		Builder<IntsRef> builder = new Builder<IntsRef>(FST.INPUT_TYPE.BYTE2, outputs);
+		IntsRefBuilder input = new IntsRefBuilder();
+		for (Map.Entry<String, int[]> entry : words.entrySet()) {
+			int[] ids = entry.getValue();
+			builder.add(Util.toUTF16(entry.getKey(), input), new IntsRef(ids, 0, ids.length));
+		}
+		FST<IntsRef> fst = builder.finish();
+
+		int[] syllableMap = new int[PinyinCharTable.getInstance().getSyllableCount()];
+		for (int i = 0; i < syllableMap.length; i++) {
+			syllableMap[i] = i;
+		}
+		return new FSTPinyinWordDictionary(fst, syllableMap, words.size());
+	}
+
+	/**
+	 * 保存为文件
+	 *
+	 * @param path
+	 *            文件路径
+	 * @throws IOException
+	 *             写入失败
+	 */
+	public void save(Path path) throws IOException {
+		try (OutputStreamDataOutput out = new OutputStreamDataOutput(
+				new BufferedOutputStream(Files.newOutputStream(path)))) {
+			CodecUtil.writeHeader(out, CODEC_NAME, VERSION_CURRENT);
+			PinyinCharTable table = PinyinCharTable.getInstance();
+			out.writeVInt(table.getSyllableCount());
+			for (int i = 0; i < table.getSyllableCount(); i++) {
+				out.writeString(table.getSyllableString(i));
+			}
+			out.writeVInt(this.size);
+			this.fst.save(out);
+		}
+	}
+
+	/**
+	 * 从流中加载
+	 *
+	 * @param in
+	 *            词典文件流
+	 * @return 词典
+	 * @throws IOException
+	 *             读取失败或格式错误
+	 */
+	public static FSTPinyinWordDictionary load(InputStream in) throws IOException {
+		return load(new InputStreamDataInput(in));
+	}
+
+	private static FSTPinyinWordDictionary load(DataInput in) throws IOException {
+		CodecUtil.checkHeader(in, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+		PinyinCharTable table = PinyinCharTable.getInstance();
+		int syllableCount = in.readVInt();
+		int[] syllableMap = new int[syllableCount];
+		for (int i = 0; i < syllableCount; i++) {
+			String syllable = in.readString();
+			syllableMap[i] = table.getSyllableId(syllable);
+			if (syllableMap[i] < 0) {
+				throw new IOException("Unknown pinyin '" + syllable + "' in dictionary");
+			}
+		}
+		int size = in.readVInt();
+		FST<IntsRef> fst = new FST<IntsRef>(in, IntSequenceOutputs.getSingleton());
+		return new FSTPinyinWordDictionary(fst, syllableMap, size);
+	}
+
+	/**
+	 * 打开词典文件并加载到堆内存，同一文件未修改时返回同一个实例
+	 *
+	 * @param path
+	 *            词典文件路径
+	 * @return 词典
+	 * @throws IOException
+	 *             读取失败或格式错误
+	 */
+	public static FSTPinyinWordDictionary open(Path path) throws IOException {
+		path = path.toAbsolutePath();
+		String key = path + ":" + Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis();
+		WeakReference<FSTPinyinWordDictionary> ref = OPENED.get(key);
+		FSTPinyinWordDictionary dictionary = ref == null ? null : ref.get();
+		if (dictionary != null) {
+			return dictionary;
+		}
+		synchronized (OPENED) {
+			ref = OPENED.get(key);
+			dictionary = ref == null ? null : ref.get();
+			if (dictionary == null) {
+				try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+					dictionary = load(in);
+				}
+				OPENED.put(key, new WeakReference<FSTPinyinWordDictionary>(dictionary));
+			}
+			return dictionary;
+		}
+	}
+
+	@Override
+	public int match(char[] buffer, int offset, int length, int[] ids) {
+		State state = this.states.get();
+		FST.Arc<IntsRef> arc = this.fst.getFirstArc(state.arc);
+		int pathLength = 0;
+		int matched = 0;
+		try {
+			for (int i = 0; i < length; i++) {
+				if (this.fst.findTargetArc(buffer[offset + i], arc, arc, state.reader) == null) {
+					break;
+				}
+				state.path = append(state.path, pathLength, arc.output);
+				pathLength += arc.output.length;
+				if (arc.isFinal()) {
+					matched = i + 1;
+					int count = 0;
+					for (int j = 0; j < pathLength; j++) {
+						ids[count++] = this.syllableMap[state.path[j]];
+					}
+					IntsRef last = arc.nextFinalOutput;
+					for (int j = 0; j < last.length; j++) {
+						ids[count++] = this.syllableMap[last.ints[last.offset + j]];
+					}
+				}
+			}
+		} catch (IOException e) {
+			// FST在内存中，不会发生
+			throw new IllegalStateException(e);
+		}
+		return matched;
+	}
+
+	private static int[] append(int[] path, int pathLength, IntsRef output) {
+		if (output.length == 0) {
+			return path;
+		}
+		path = ArrayUtil.grow(path, pathLength + output.length);
+		System.arraycopy(output.ints, output.offset, path, pathLength, output.length);
+		return path;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 *
+	 * @return FST占用的内存字节数
+	 */
+	public long ramBytesUsed() {
+		return this.fst.ramBytesUsed();
+	}
+
+	/**
+	 * 遍历状态
+	 */
+	private static final class State {
+		final FST.Arc<IntsRef> arc = new FST.Arc<IntsRef>();
+		final FST.BytesReader reader;
+		int[] path = new int[16];
+
+		State(FST<IntsRef> fst) {
+			this.reader = fst.getBytesReader();
+		}
+	}
+
+	/**
+	 * 将词典文本编译为FST文件
+	 *
+	 * @param args
+	 *            词典文本文件（UTF-8） FST文件
+	 * @throws IOException
+	 *             读写失败
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: java " + FSTPinyinWordDictionary.class.getName() + " <dict.txt> <dict.fst>");
+			System.exit(1);
+		}
+		FSTPinyinWordDictionary dictionary = compile(Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8));
+		dictionary.save(Paths.get(args[1]));
+		System.out.println(dictionary.size() + " words, " + dictionary.ramBytesUsed() + " bytes");
+	}
+}
@@ -0,0 +1,131 @@
+package org.easy.search.analysis;
+
+import java.util.Locale;
+
+import org.apache.lucene.analysis.util.CharArrayMap;
+
+/**
+ * 基于{@link CharArrayMap}的词语拼音词典，直接在词元缓冲区上查找，不产生对象分配。
+ * <p>
+ * 词典文本格式为每行一个词语，词语与读音之间、读音音节之间以空白或逗号分隔，音节个数必须与词语字数相同：
+ *
+ * <pre>
+ * # 注释
+ * 银行 yin hang
+ * 重庆 chong,qing
+ * 绿色 lv4 se4
+ * </pre>
+ *
+ * 音节中的ü可写作v或u:，末尾的声调数字会被忽略。
+ */
+public final class MapPinyinWordDictionary implements PinyinWordDictionary {
+
+	private final CharArrayMap<int[]> words;
+
+	/**
+	 * 最长词语的字符数
+	 */
+	private final int maxWordLength;
+
+	private MapPinyinWordDictionary(CharArrayMap<int[]> words, int maxWordLength) {
+		this.words = words;
+		this.maxWordLength = maxWordLength;
+	}
+
+	/**
+	 * 解析词典文本
+	 *
+	 * @param lines
+	 *            词典行，空行及#开头的行忽略
+	 * @return 词典
+	 */
+	public static MapPinyinWordDictionary parse(Iterable<String> lines) {
+		final CharArrayMap<int[]> words = new CharArrayMap<int[]>(16, false);
+		final int[] maxWordLength = new int[1];
+		parse(lines, new EntryHandler() {
+			@Override
+			public void handle(String word, int[] ids) {
+				words.put(word, ids);
+				maxWordLength[0] = Math.max(maxWordLength[0], word.length());
+			}
+		});
+		return new MapPinyinWordDictionary(words, maxWordLength[0]);
+	}
+
+	/**
+	 * 解析词典文本，逐条交给处理器
+	 *
+	 * @param lines
+	 *            词典行，空行及#开头的行忽略
+	 * @param handler
+	 *            词条处理器
+	 */
+	static void parse(Iterable<String> lines, EntryHandler handler) {
+		PinyinCharTable table = PinyinCharTable.getInstance();
+		for (String line : lines) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] fields = line.split("[\\s,]+");
+			String word = fields[0];
+			int charCount = word.codePointCount(0, word.length());
+			if (fields.length - 1 != charCount) {
+				throw new IllegalArgumentException("Pinyin count does not match word length: " + line);
+			}
+			int[] ids = new int[charCount];
+			for (int i = 0; i < charCount; i++) {
+				String syllable = normalize(fields[i + 1]);
+				ids[i] = table.getSyllableId(syllable);
+				if (ids[i] < 0) {
+					throw new IllegalArgumentException("Unknown pinyin '" + fields[i + 1] + "': " + line);
+				}
+			}
+			handler.handle(word, ids);
+		}
+	}
+
+	/**
+	 * 统一音节写法：小写、去掉声调数字、ü写作u:
+	 */
+	private static String normalize(String syllable) {
+		String s = syllable.toLowerCase(Locale.ROOT);
+		int end = s.length();
+		while (end > 0 && Character.isDigit(s.charAt(end - 1))) {
+			end--;
+		}
+		return s.substring(0, end).replace("u:", "v").replace('ü', 'v').replace("v", "u:");
+	}
+
+	@Override
+	public int match(char[] buffer, int offset, int length, int[] ids) {
+		for (int len = Math.min(length, this.maxWordLength); len > 0; len--) {
+			int[] readings = this.words.get(buffer, offset, len);
+			if (readings != null) {
+				System.arraycopy(readings, 0, ids, 0, readings.length);
+				return len;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public int size() {
+		return this.words.size();
+	}
+
+	/**
+	 * 词条处理器
+	 */
+	interface EntryHandler {
+
+		/**
+		 *
+		 * @param word
+		 *            词语
+		 * @param ids
+		 *            每个字的读音音节编号
+		 */
+		void handle(String word, int[] ids);
+	}
+}
@@ -0,0 +1,322 @@
+package org.easy.search.analysis;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.easy.search.analysis.PinyinTransformTokenFilter.OutputFormat;
+
+/**
+ * 批量拼音转换，用于在Solr之外预先计算拼音，转换逻辑与{@link PinyinTransformTokenFilter}相同。
+ * <p>
+ * 每条记录作为一个词元转换，全部拼音依次写入调用方提供的缓冲区，不为每个拼音创建对象。非线程安全，
+ * 并行转换时每个线程一个实例。
+ * <p>
+ * {@link #main(String[])}为命令行工具：以内存映射方式读取每行一条记录的UTF-8文件，按块交给fork-join线程池转换，
+ * 按输入顺序写出“原文\t拼音 拼音...”，结束时输出吞吐量。命令行工具的其他参数与{@link PinyinTransformTokenFilter}的默认值相同。
+ */
+public final class PinyinBatchConverter {
+
+	/**
+	 * 命令行工具每块的字节数
+	 */
+	static final int CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * 命令行工具每次映射的最大字节数
+	 */
+	static final int MAP_SIZE = 1 << 28;
+
+	private final PinyinTermTransformer transformer;
+
+	/**
+	 * 当前记录
+	 */
+	private char[] term = new char[64];
+
+	/**
+	 *
+	 * @param options
+	 *            转换配置，构造时读取，不支持按音节、词元图及编码输出，不记录运行指标，见{@link PinyinTransformOptions}
+	 */
+	public PinyinBatchConverter(PinyinTransformOptions options) {
+		if (options.isGraph() || options.isBinary()) {
+			throw new IllegalArgumentException("syllable, graph and binary output are not supported");
+		}
+		this.transformer = new PinyinTermTransformer(options, null);
+	}
+
+	/**
+	 * 转换一条记录
+	 *
+	 * @param text
+	 *            记录
+	 * @param out
+	 *            输出，各拼音以separator分隔追加在末尾
+	 * @param separator
+	 *            拼音分隔符
+	 * @return 拼音个数，中文字数不足不转换时为0
+	 */
+	public int convert(CharSequence text, StringBuilder out, char separator) {
+		int length = text.length();
+		this.term = ArrayUtil.grow(this.term, length);
+		for (int i = 0; i < length; i++) {
+			this.term[i] = text.charAt(i);
+		}
+		if (this.transformer.transform(this.term, length) == null) {
+			return 0;
+		}
+		int count = 0;
+		while (this.transformer.next()) {
+			if (count++ > 0) {
+				out.append(separator);
+			}
+			out.append(this.transformer.buffer(), this.transformer.offset(), this.transformer.length());
+		}
+		return count;
+	}
+
+	/**
+	 * 转换一批记录
+	 *
+	 * @param batch
+	 *            记录
+	 * @param out
+	 *            输出，每条记录的拼音以separator分隔依次追加在末尾
+	 * @param separator
+	 *            拼音分隔符
+	 * @param ends
+	 *            每条记录的拼音在out中的结束位置，容量不小于batch的大小
+	 * @param counts
+	 *            每条记录的拼音个数，容量不小于batch的大小，可为null
+	 */
+	public void convert(List<? extends CharSequence> batch, StringBuilder out, char separator, int[] ends,
+			int[] counts) {
+		for (int i = 0; i < batch.size(); i++) {
+			int count = convert(batch.get(i), out, separator);
+			ends[i] = out.length();
+			if (counts != null) {
+				counts[i] = count;
+			}
+		}
+	}
+
+	/**
+	 * 批量转换文件
+	 *
+	 * @param args
+	 *            输入文件、输出文件、输出格式（可选，默认both）、线程数（可选，默认处理器数）
+	 * @throws IOException
+	 *             读写失败
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || args.length > 4) {
+			System.err.println("Usage: java " + PinyinBatchConverter.class.getName()
+					+ " <input.txt> <output.txt> [full|short|both] [threads]");
+			System.exit(1);
+		}
+		OutputFormat format = args.length > 2 ? OutputFormat.getOutFormat(args[2])
+				: PinyinTransformTokenFilter.DEFAULT_OUTPUT_FORMAT;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		long start = System.nanoTime();
+		long[] stats = convertFile(Paths.get(args[0]), Paths.get(args[1]), format, threads);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%d records, %d bytes in %.2f s, %.0f records/s, %.1f MB/s", stats[0],
+				stats[1], seconds, stats[0] / seconds, stats[1] / seconds / (1 << 20)));
+	}
+
+	/**
+	 * 并行转换文件，输出顺序与输入相同
+	 *
+	 * @param input
+	 *            输入文件，UTF-8，每行一条记录
+	 * @param output
+	 *            输出文件
+	 * @param format
+	 *            输出格式
+	 * @param threads
+	 *            线程数
+	 * @return 记录数及输入字节数
+	 * @throws IOException
+	 *             读写失败
+	 */
+	static long[] convertFile(Path input, Path output, OutputFormat format, int threads) throws IOException {
+		return convertFile(input, output, format, threads, CHUNK_SIZE, MAP_SIZE);
+	}
+
+	/**
+	 * 并行转换文件，输出顺序与输入相同
+	 *
+	 * @param input
+	 *            输入文件，UTF-8，每行一条记录
+	 * @param output
+	 *            输出文件
+	 * @param format
+	 *            输出格式
+	 * @param threads
+	 *            线程数
+	 * @param chunkSize
+	 *            每块的字节数，块在换行符处切分，一行超过时延伸到行尾
+	 * @param mapSize
+	 *            每次映射的最大字节数，一行不能超过
+	 * @return 记录数及输入字节数
+	 * @throws IOException
+	 *             读写失败或一行超过mapSize
+	 */
+	static long[] convertFile(Path input, Path output, final OutputFormat format, int threads, int chunkSize,
+			int mapSize) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		// 每个工作线程一个转换实例
+		final ThreadLocal<PinyinBatchConverter> converters = new ThreadLocal<PinyinBatchConverter>() {
+			@Override
+			protected PinyinBatchConverter initialValue() {
+				return new PinyinBatchConverter(new PinyinTransformOptions().setOutputFormat(format));
+			}
+		};
+		long records = 0;
+		try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+				OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 1 << 16)) {
+			long size = channel.size();
+			// 进行中的块不超过线程数的4倍，内存占用与文件大小无关
+			Deque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+			int maxPending = threads * 4;
+			long position = 0;
+			while (position < size) {
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(mapSize, size - position));
+				boolean last = position + mapped.limit() == size;
+				int from = 0;
+				while (from < mapped.limit()) {
+					int to = lineEnd(mapped, Math.min(from + chunkSize, mapped.limit()), from, last);
+					if (to < 0) {
+						break;
+					}
+					final ByteBuffer slice = slice(mapped, from, to);
+					pending.add(pool.submit(new Callable<Chunk>() {
+						@Override
+						public Chunk call() {
+							return converters.get().convertChunk(slice);
+						}
+					}));
+					if (pending.size() >= maxPending) {
+						records += write(pending.poll(), out);
+					}
+					from = to;
+				}
+				if (from == 0) {
+					throw new IOException("Line longer than " + mapSize + " bytes at offset " + position);
+				}
+				position += from;
+			}
+			while (!pending.isEmpty()) {
+				records += write(pending.poll(), out);
+			}
+			return new long[] { records, size };
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 *
+	 * @return 不超过limit的最后一个换行符之后的位置；到达映射末尾时为映射末尾，不完整的最后一行留给下次映射，
+	 *         此时返回-1
+	 */
+	private static int lineEnd(ByteBuffer buffer, int limit, int from, boolean last) {
+		if (limit == buffer.limit() && last) {
+			return limit;
+		}
+		for (int i = limit; i > from; i--) {
+			if (buffer.get(i - 1) == '\n') {
+				return i;
+			}
+		}
+		if (limit < buffer.limit()) {
+			// 块内没有换行符，延伸到下一个换行符
+			for (int i = limit; i < buffer.limit(); i++) {
+				if (buffer.get(i) == '\n') {
+					return i + 1;
+				}
+			}
+		}
+		return last ? buffer.limit() : -1;
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int from, int to) {
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(from);
+		duplicate.limit(to);
+		return duplicate.slice();
+	}
+
+	private static int write(Future<Chunk> future, OutputStream out) throws IOException {
+		Chunk chunk;
+		try {
+			chunk = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to convert", e.getCause());
+		}
+		out.write(chunk.bytes);
+		return chunk.records;
+	}
+
+	/**
+	 * 转换一块输入，每行输出“原文\t拼音 拼音...”
+	 */
+	private Chunk convertChunk(ByteBuffer bytes) {
+		CharBuffer chars = StandardCharsets.UTF_8.decode(bytes);
+		StringBuilder out = new StringBuilder(chars.length() * 4);
+		int records = 0;
+		int start = 0;
+		int length = chars.length();
+		while (start < length) {
+			int end = start;
+			while (end < length && chars.get(end) != '\n') {
+				end++;
+			}
+			int lineEnd = end > start && chars.get(end - 1) == '\r' ? end - 1 : end;
+			CharSequence line = chars.subSequence(start, lineEnd);
+			out.append(line).append('\t');
+			convert(line, out, ' ');
+			out.append('\n');
+			records++;
+			start = end + 1;
+		}
+		return new Chunk(out.toString().getBytes(StandardCharsets.UTF_8), records);
+	}
+
+	/**
+	 * 一块的转换结果
+	 */
+	private static final class Chunk {
+
+		final byte[] bytes;
+
+		final int records;
+
+		Chunk(byte[] bytes, int records) {
+			this.bytes = bytes;
+			this.records = records;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package org.easy.search.analysis;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.lucene.analysis.charfilter.BaseCharFilter;
+
+/**
+ * 拼音字符过滤器，在分词之前将文本中的汉字转换为拼音，用于整篇正文的拼音检索。
+ * <p>
+ * 每个汉字替换为最常用读音的全拼（ü写为v），音节前后加分隔符，其他字符原样保留，因此不需要上游中文分词，
+ * 空白或标准分词即可按音节切分，如“中国人hello”转换为“zhong guo ren hello”。按固定大小的块读取输入，
+ * 读写缓冲区大小与文档长度无关。
+ * <p>
+ * 偏移修正记录在{@link BaseCharFilter}中，高亮时仍对应原文位置。每个转换的汉字最多记录两个修正点：音节起始位置对应汉字起始位置，
+ * 音节结束位置对应汉字结束位置，分隔符之后的其他字符记录一个。修正表随转换的字数线性增长（每个修正点8字节），
+ * 这是{@link BaseCharFilter}的固有开销，因此整体内存与文档长度成正比，只是远小于文档本身。
+ * 音节内部位置的偏移不做修正且不保证单调，不适合在音节内部切分的分词器（如NGramTokenizer）。
+ * <p>
+ * 多音字只取常用读音，不使用词语拼音词典。
+ */
+public final class PinyinCharFilter extends BaseCharFilter {
+
+	/**
+	 * 默认音节分隔符
+	 */
+	public static final String DEFAULT_SEPARATOR = " ";
+
+	/**
+	 * 每次从输入读取的字符数
+	 */
+	static final int BUFFER_SIZE = 1024;
+
+	/**
+	 * 最长的音节拼写，至少为2以容纳代理对
+	 */
+	private static final int MAX_SPELLING_LENGTH;
+
+	static {
+		PinyinCharTable table = PinyinCharTable.getInstance();
+		int max = 2;
+		for (int id = 0; id < table.getSyllableCount(); id++) {
+			max = Math.max(max, table.getSyllable(id).length);
+		}
+		MAX_SPELLING_LENGTH = max;
+	}
+
+	private final PinyinCharTable table = PinyinCharTable.getInstance();
+
+	/**
+	 * 音节分隔符
+	 */
+	private final char[] separator;
+
+	/**
+	 * 模糊音规则，可为null
+	 */
+	private final PinyinFuzzyRules fuzzy;
+
+	/**
+	 * 输入缓冲区
+	 */
+	private final char[] inputBuffer = new char[BUFFER_SIZE];
+
+	private int inputPos;
+
+	private int inputEnd;
+
+	private boolean eof;
+
+	/**
+	 * 已转换未读取的输出
+	 */
+	private final char[] outputBuffer;
+
+	private int outputPos;
+
+	private int outputEnd;
+
+	/**
+	 * 输出缓冲区起始位置在输出中的偏移
+	 */
+	private int outputBase;
+
+	/**
+	 * 上一个输出的字符，没有时为-1
+	 */
+	private int lastChar = -1;
+
+	/**
+	 * 上一个输出是否为拼音
+	 */
+	private boolean lastPinyin;
+
+	public PinyinCharFilter(Reader input) {
+		this(input, DEFAULT_SEPARATOR, null);
+	}
+
+	/**
+	 *
+	 * @param input
+	 *            输入
+	 * @param separator
+	 *            音节分隔符，只在拼音与其他非空白字符之间添加，为空时拼音直接连接
+	 * @param fuzzy
+	 *            模糊音规则，可为null
+	 */
+	public PinyinCharFilter(Reader input, String separator, PinyinFuzzyRules fuzzy) {
+		super(input);
+		if (separator == null) {
+			throw new IllegalArgumentException("separator must not be null");
+		}
+		this.separator = separator.toCharArray();
+		this.fuzzy = fuzzy;
+		this.outputBuffer = new char[BUFFER_SIZE + this.separator.length + MAX_SPELLING_LENGTH];
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		int written = 0;
+		while (written < len) {
+			if (this.outputPos == this.outputEnd && !fill()) {
+				break;
+			}
+			int n = Math.min(len - written, this.outputEnd - this.outputPos);
+			System.arraycopy(this.outputBuffer, this.outputPos, cbuf, off + written, n);
+			this.outputPos += n;
+			written += n;
+		}
+		return written == 0 && len > 0 ? -1 : written;
+	}
+
+	/**
+	 * 转换输入直到输出缓冲区将满
+	 *
+	 * @return 输入结束且没有输出时返回false
+	 */
+	private boolean fill() throws IOException {
+		this.outputBase += this.outputEnd;
+		this.outputPos = 0;
+		this.outputEnd = 0;
+		while (this.outputEnd + this.separator.length + MAX_SPELLING_LENGTH <= this.outputBuffer.length
+				&& ensureInput()) {
+			int codePoint = Character.codePointAt(this.inputBuffer, this.inputPos, this.inputEnd);
+			int charCount = Character.charCount(codePoint);
+			this.inputPos += charCount;
+			int start = this.outputEnd;
+			int textStart;
+			if (this.table.getReadingCount(codePoint) > 0) {
+				if (this.lastChar >= 0 && !Character.isWhitespace(this.lastChar)) {
+					appendSeparator();
+				}
+				textStart = this.outputEnd;
+				int id = this.table.getReading(codePoint, 0);
+				appendSpelling(this.fuzzy != null ? this.fuzzy.spelling(id) : this.table.getSyllable(id));
+				this.lastPinyin = true;
+			} else {
+				if (this.lastPinyin && !Character.isWhitespace(codePoint)) {
+					appendSeparator();
+				}
+				textStart = this.outputEnd;
+				this.outputEnd += Character.toChars(codePoint, this.outputBuffer, this.outputEnd);
+				this.lastPinyin = false;
+			}
+			if (this.outputEnd > start) {
+				this.lastChar = this.outputBuffer[this.outputEnd - 1];
+			}
+			correctOffsets(this.outputBase + start, this.outputBase + textStart, this.outputBase + this.outputEnd,
+					charCount);
+		}
+		return this.outputEnd > 0;
+	}
+
+	/**
+	 * 输入缓冲区为空或只剩高代理项时读取输入
+	 *
+	 * @return 还有输入时返回true
+	 */
+	private boolean ensureInput() throws IOException {
+		while (!this.eof && (this.inputPos == this.inputEnd || (this.inputPos + 1 == this.inputEnd
+				&& Character.isHighSurrogate(this.inputBuffer[this.inputPos])))) {
+			int remaining = this.inputEnd - this.inputPos;
+			System.arraycopy(this.inputBuffer, this.inputPos, this.inputBuffer, 0, remaining);
+			this.inputPos = 0;
+			this.inputEnd = remaining;
+			int n = this.input.read(this.inputBuffer, remaining, this.inputBuffer.length - remaining);
+			if (n < 0) {
+				this.eof = true;
+			} else {
+				this.inputEnd += n;
+			}
+		}
+		return this.inputPos < this.inputEnd;
+	}
+
+	private void appendSeparator() {
+		System.arraycopy(this.separator, 0, this.outputBuffer, this.outputEnd, this.separator.length);
+		this.outputEnd += this.separator.length;
+	}
+
+	/**
+	 * 写入音节拼写，pinyin4j的u:写为v
+	 */
+	private void appendSpelling(char[] spelling) {
+		for (char c : spelling) {
+			if (c == ':') {
+				this.outputBuffer[this.outputEnd - 1] = 'v';
+			} else {
+				this.outputBuffer[this.outputEnd++] = c;
+			}
+		}
+	}
+
+	/**
+	 * 记录一个输入字符替换后的偏移修正：替换结果（不含之前的分隔符）的起始位置对应输入字符的起始位置，
+	 * 结束位置对应输入字符的结束位置。分隔符对应前一个输入字符的结束位置，与之前的修正相同
+	 *
+	 * @param outputStart
+	 *            分隔符在输出中的起始位置，没有分隔符时与textStart相同
+	 * @param textStart
+	 *            替换结果在输出中的起始位置
+	 * @param outputEnd
+	 *            替换结果在输出中的结束位置
+	 * @param inputLength
+	 *            输入字符长度
+	 */
+	private void correctOffsets(int outputStart, int textStart, int outputEnd, int inputLength) {
+		// 输出位置加修正值为输入位置
+		int inputStart = outputStart + getLastCumulativeDiff();
+		addCorrection(textStart, inputStart - textStart);
+		addCorrection(outputEnd, inputStart + inputLength - outputEnd);
+	}
+
+	private void addCorrection(int offset, int cumulativeDiff) {
+		if (cumulativeDiff != getLastCumulativeDiff()) {
+			addOffCorrectMap(offset, cumulativeDiff);
+		}
+	}
+}
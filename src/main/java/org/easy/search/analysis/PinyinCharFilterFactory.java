@@ -0,0 +1,41 @@
+package org.easy.search.analysis;
+
+import java.io.Reader;
+import java.util.Map;
+
+import org.apache.lucene.analysis.util.CharFilterFactory;
+
+/**
+ * 拼音字符过滤器工厂，见{@link PinyinCharFilter}
+ */
+public class PinyinCharFilterFactory extends CharFilterFactory {
+
+	/**
+	 * 音节分隔符
+	 */
+	private final String separator;
+
+	/**
+	 * 模糊音规则，未配置时为null
+	 */
+	private final PinyinFuzzyRules fuzzy;
+
+	/**
+	 *
+	 * @param args
+	 *            init param
+	 */
+	public PinyinCharFilterFactory(Map<String, String> args) {
+		super(args);
+		this.separator = get(args, "separator", PinyinCharFilter.DEFAULT_SEPARATOR);
+		this.fuzzy = PinyinFuzzyRules.parse(get(args, "fuzzy"));
+		if (!args.isEmpty()) {
+			throw new IllegalArgumentException("Unknown parameters: " + args);
+		}
+	}
+
+	@Override
+	public Reader create(Reader input) {
+		return new PinyinCharFilter(input, this.separator, this.fuzzy);
+	}
+}
@@ -0,0 +1,295 @@
+package org.easy.search.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.lucene.analysis.util.CharArraySet;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+
+/**
+ * 汉字拼音查找表。
+ * <p>
+ * 在首次使用时一次性遍历pinyin4j的全部汉字读音（小写、无声调），编译为按码点索引的紧凑数组：
+ * 每个码点对应一段读音音节编号，音节编号指向全局共享的音节拼写表。查找时只做数组访问，不产生任何对象分配。
+ * <p>
+ * 音节按拼写排序后编号，同一版本的pinyin4j下编号稳定。同一汉字的重复读音（去声调后相同）只保留一个，
+ * 读音顺序与pinyin4j一致，即常用读音在前。
+ * <p>
+ * 查找表不可变，同一JVM内的所有core共享一个实例且不会释放。构建需要加载pinyin4j的全部读音，
+ * 可由{@link #warmUp()}在core加载时于后台线程提前构建，避免首个请求承担加载耗时。
+ */
+public final class PinyinCharTable {
+
+	/**
+	 * 后台预加载任务，首次调用{@link #warmUp()}时创建
+	 */
+	private static final AtomicReference<FutureTask<PinyinCharTable>> WARMUP = new AtomicReference<FutureTask<PinyinCharTable>>();
+
+	/**
+	 * 音节拼写，下标为音节编号
+	 */
+	private final char[][] syllables;
+
+	/**
+	 * 音节拼写字符串，与{@link #syllables}一一对应
+	 */
+	private final String[] syllableStrings;
+
+	/**
+	 * 全部音节拼写，用于切分拼音字符串
+	 */
+	private final CharArraySet syllableSet;
+
+	/**
+	 * 最长的音节拼写长度
+	 */
+	private final int maxSyllableLength;
+
+	/**
+	 * 查找表覆盖的最小码点
+	 */
+	private final int minCodePoint;
+
+	/**
+	 * 查找表覆盖的最大码点
+	 */
+	private final int maxCodePoint;
+
+	/**
+	 * 码点读音在{@link #readings}中的起始位置，长度为码点范围加1
+	 */
+	private final int[] offsets;
+
+	/**
+	 * 全部码点的读音音节编号
+	 */
+	private final short[] readings;
+
+	private PinyinCharTable() {
+		HanyuPinyinOutputFormat format = new HanyuPinyinOutputFormat();
+		format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+		format.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+
+		// 第一遍：收集所有读音及音节集合
+		String[][] charReadings = new String[Character.MAX_VALUE + 1][];
+		TreeSet<String> syllableSet = new TreeSet<String>();
+		int min = Integer.MAX_VALUE;
+		int max = -1;
+		for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+			if (Character.isSurrogate((char) c)) {
+				continue;
+			}
+			String[] array;
+			try {
+				array = PinyinHelper.toHanyuPinyinStringArray((char) c, format);
+			} catch (BadHanyuPinyinOutputFormatCombination e) {
+				throw new IllegalStateException(e);
+			}
+			if (array == null || array.length == 0) {
+				continue;
+			}
+			charReadings[c] = distinct(array);
+			syllableSet.addAll(Arrays.asList(charReadings[c]));
+			min = Math.min(min, c);
+			max = Math.max(max, c);
+		}
+
+		this.syllableStrings = syllableSet.toArray(new String[syllableSet.size()]);
+		this.syllables = new char[this.syllableStrings.length][];
+		this.syllableSet = new CharArraySet(this.syllableStrings.length, false);
+		int maxLength = 0;
+		for (int i = 0; i < this.syllableStrings.length; i++) {
+			this.syllables[i] = this.syllableStrings[i].toCharArray();
+			this.syllableSet.add(this.syllables[i]);
+			maxLength = Math.max(maxLength, this.syllables[i].length);
+		}
+		this.maxSyllableLength = maxLength;
+
+		// 第二遍：编译为数组
+		if (max < 0) {
+			min = max = 0;
+		}
+		this.minCodePoint = min;
+		this.maxCodePoint = max;
+		this.offsets = new int[max - min + 2];
+		int total = 0;
+		for (int c = min; c <= max; c++) {
+			if (charReadings[c] != null) {
+				total += charReadings[c].length;
+			}
+		}
+		this.readings = new short[total];
+		int pos = 0;
+		for (int c = min; c <= max; c++) {
+			this.offsets[c - min] = pos;
+			if (charReadings[c] != null) {
+				for (String reading : charReadings[c]) {
+					this.readings[pos++] = (short) Arrays.binarySearch(this.syllableStrings, reading);
+				}
+			}
+		}
+		this.offsets[max - min + 1] = pos;
+	}
+
+	/**
+	 * 去除重复读音，保持原有顺序
+	 */
+	private static String[] distinct(String[] array) {
+		List<String> list = new ArrayList<String>(array.length);
+		for (String s : array) {
+			if (!list.contains(s)) {
+				list.add(s);
+			}
+		}
+		return list.toArray(new String[list.size()]);
+	}
+
+	/**
+	 *
+	 * @return 全局共享的查找表，首次调用时构建
+	 */
+	public static PinyinCharTable getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * 在后台线程中构建查找表及音节前缀树，同一JVM内只启动一次。构建期间调用{@link #getInstance()}的线程
+	 * 等待构建完成而不会重复构建。
+	 *
+	 * @return 预加载任务，完成后返回查找表
+	 */
+	public static Future<PinyinCharTable> warmUp() {
+		FutureTask<PinyinCharTable> task = WARMUP.get();
+		if (task != null) {
+			return task;
+		}
+		task = new FutureTask<PinyinCharTable>(new Callable<PinyinCharTable>() {
+			@Override
+			public PinyinCharTable call() {
+				PinyinCharTable table = getInstance();
+				PinyinSyllableTrie.getInstance();
+				return table;
+			}
+		});
+		if (!WARMUP.compareAndSet(null, task)) {
+			return WARMUP.get();
+		}
+		Thread thread = new Thread(task, "pinyin-table-warmup");
+		thread.setDaemon(true);
+		thread.start();
+		return task;
+	}
+
+	/**
+	 *
+	 * @return 音节总数，音节编号取值范围为[0, 音节总数)
+	 */
+	public int getSyllableCount() {
+		return this.syllables.length;
+	}
+
+	/**
+	 *
+	 * @param id
+	 *            音节编号
+	 * @return 音节拼写，共享数组，调用方不得修改
+	 */
+	public char[] getSyllable(int id) {
+		return this.syllables[id];
+	}
+
+	/**
+	 *
+	 * @param id
+	 *            音节编号
+	 * @return 音节拼写字符串
+	 */
+	public String getSyllableString(int id) {
+		return this.syllableStrings[id];
+	}
+
+	/**
+	 *
+	 * @param spelling
+	 *            音节拼写（小写、无声调）
+	 * @return 音节编号，不存在时返回-1
+	 */
+	public int getSyllableId(String spelling) {
+		int id = Arrays.binarySearch(this.syllableStrings, spelling);
+		return id < 0 ? -1 : id;
+	}
+
+	/**
+	 *
+	 * @param codePoint
+	 *            字符码点
+	 * @return 该字符的读音个数，非汉字或无读音时返回0
+	 */
+	public int getReadingCount(int codePoint) {
+		if (codePoint < this.minCodePoint || codePoint > this.maxCodePoint) {
+			return 0;
+		}
+		int i = codePoint - this.minCodePoint;
+		return this.offsets[i + 1] - this.offsets[i];
+	}
+
+	/**
+	 *
+	 * @param codePoint
+	 *            字符码点
+	 * @param index
+	 *            读音序号，取值范围为[0, {@link #getReadingCount(int)})，常用读音在前
+	 * @return 读音的音节编号
+	 */
+	public int getReading(int codePoint, int index) {
+		return this.readings[this.offsets[codePoint - this.minCodePoint] + index];
+	}
+
+	/**
+	 * 按最长匹配将拼音字符串切分为音节，不能匹配音节的字符单独作为一个音节
+	 *
+	 * @param buffer
+	 *            拼音字符串
+	 * @param offset
+	 *            起始位置
+	 * @param length
+	 *            长度
+	 * @param ends
+	 *            每个音节相对起始位置的结束位置，容量不小于length
+	 * @return 音节个数
+	 */
+	public int segment(char[] buffer, int offset, int length, int[] ends) {
+		int count = 0;
+		int pos = 0;
+		while (pos < length) {
+			int matched = 0;
+			for (int len = Math.min(this.maxSyllableLength, length - pos); len > 0; len--) {
+				if (this.syllableSet.contains(buffer, offset + pos, len)) {
+					matched = len;
+					break;
+				}
+			}
+			if (matched == 0) {
+				matched = Character.charCount(Character.codePointAt(buffer, offset + pos, offset + length));
+			}
+			pos += matched;
+			ends[count++] = pos;
+		}
+		return count;
+	}
+
+	private static final class Holder {
+		private static final PinyinCharTable INSTANCE = new PinyinCharTable();
+	}
+}
@@ -0,0 +1,289 @@
+package org.easy.search.analysis;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.easy.search.analysis.PinyinNGramTokenFilter.OutputDirection;
+
+/**
+ * 词元的前缀、后缀切分，供拼音NGram过滤器及拼音转换NGram过滤器共用。
+ * <p>
+ * {@link #reset(char[], int, int)}之后反复调用{@link #next()}，当前切分为缓冲区中
+ * [offset + {@link #start()}, offset + {@link #end()})。按长度从minGram到maxGram依次输出，长度以代码点计，
+ * 双向输出时同一长度先输出后缀再输出前缀，与后缀相同的前缀（如完整词元）不再输出。
+ * <p>
+ * 按音节切分时长度以音节计，只在音节边界切分；允许末尾不完整音节时，每个切分的最后一个音节还输出其各个前缀，
+ * 例如zhongguo的2音节前缀为zhongg、zhonggu、zhongguo。非线程安全。
+ */
+final class PinyinEdgeGrams {
+
+	private final int minGram;
+
+	private final int maxGram;
+
+	private final OutputDirection direction;
+
+	/**
+	 * 是否按音节切分
+	 */
+	private final boolean syllableUnit;
+
+	/**
+	 * 按音节切分时，是否输出末尾不完整的音节
+	 */
+	private final boolean partialSyllable;
+
+	private char[] buffer;
+
+	private int offset;
+
+	private int length;
+
+	private int codePointCount;
+
+	private int gramSize;
+
+	/**
+	 * 双向输出时当前长度的后缀是否已输出
+	 */
+	private boolean backDone;
+
+	private int start;
+
+	private int end;
+
+	/**
+	 * 按音节切分时每个音节的结束位置
+	 */
+	private int[] syllableEnds = new int[16];
+
+	private int syllableCount;
+
+	/**
+	 * 按音节切分时当前长度的全部切分
+	 */
+	private int[] gramStarts = new int[16];
+
+	private int[] gramEnds = new int[16];
+
+	private int gramCount;
+
+	private int gramIndex;
+
+	PinyinEdgeGrams(int minGram, int maxGram, OutputDirection direction) {
+		this(minGram, maxGram, direction, false, false);
+	}
+
+	PinyinEdgeGrams(int minGram, int maxGram, OutputDirection direction, boolean syllableUnit,
+			boolean partialSyllable) {
+		this.minGram = minGram;
+		this.maxGram = maxGram;
+		this.direction = direction;
+		this.syllableUnit = syllableUnit;
+		this.partialSyllable = partialSyllable;
+	}
+
+	/**
+	 *
+	 * @return 是否按音节切分
+	 */
+	boolean isSyllableUnit() {
+		return this.syllableUnit;
+	}
+
+	/**
+	 * 开始切分词元，按音节切分时以最长匹配确定音节边界
+	 *
+	 * @param buffer
+	 *            缓冲区
+	 * @param offset
+	 *            词元起始位置
+	 * @param length
+	 *            词元长度
+	 */
+	void reset(char[] buffer, int offset, int length) {
+		reset(buffer, offset, length, null, 0);
+	}
+
+	/**
+	 * 开始切分词元
+	 *
+	 * @param buffer
+	 *            缓冲区
+	 * @param offset
+	 *            词元起始位置
+	 * @param length
+	 *            词元长度
+	 * @param syllableEnds
+	 *            每个音节相对词元的结束位置，只在按音节切分时使用
+	 * @param syllableCount
+	 *            音节个数，为0时以最长匹配确定音节边界
+	 */
+	void reset(char[] buffer, int offset, int length, int[] syllableEnds, int syllableCount) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+		this.codePointCount = Character.codePointCount(buffer, offset, length);
+		this.gramSize = this.minGram;
+		this.backDone = false;
+		if (this.syllableUnit) {
+			if (syllableCount > 0) {
+				this.syllableEnds = ArrayUtil.grow(this.syllableEnds, syllableCount);
+				System.arraycopy(syllableEnds, 0, this.syllableEnds, 0, syllableCount);
+				this.syllableCount = syllableCount;
+			} else {
+				this.syllableEnds = ArrayUtil.grow(this.syllableEnds, length);
+				this.syllableCount = PinyinCharTable.getInstance().segment(buffer, offset, length,
+						this.syllableEnds);
+			}
+			this.gramCount = 0;
+			this.gramIndex = 0;
+		}
+	}
+
+	/**
+	 *
+	 * @return 没有更多切分时返回false
+	 */
+	boolean next() {
+		if (this.syllableUnit) {
+			return nextSyllableGram();
+		}
+		while (this.gramSize <= this.maxGram && this.gramSize <= this.codePointCount) {
+			int size = this.gramSize;
+			switch (this.direction) {
+			case FRONT:
+				setFront(size);
+				this.gramSize++;
+				return true;
+			case BACK:
+				setBack(size);
+				this.gramSize++;
+				return true;
+			default:
+				if (!this.backDone) {
+					this.backDone = true;
+					setBack(size);
+					return true;
+				}
+				this.backDone = false;
+				this.gramSize++;
+				// 前缀与刚输出的后缀相同时跳过
+				int backStart = this.start;
+				setFront(size);
+				if (!sameChars(backStart, this.length, this.start, this.end)) {
+					return true;
+				}
+				break;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 当前切分设为size个代码点的前缀
+	 */
+	private void setFront(int size) {
+		this.start = 0;
+		this.end = Character.offsetByCodePoints(this.buffer, this.offset, this.length, this.offset, size)
+				- this.offset;
+	}
+
+	/**
+	 * 当前切分设为size个代码点的后缀
+	 */
+	private void setBack(int size) {
+		this.end = this.length;
+		this.start = Character.offsetByCodePoints(this.buffer, this.offset, this.length, this.offset + this.length,
+				-size) - this.offset;
+	}
+
+	/**
+	 * [otherStart, otherEnd)与[start, end)的字符是否相同
+	 */
+	private boolean sameChars(int otherStart, int otherEnd, int start, int end) {
+		if (otherEnd - otherStart != end - start) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (this.buffer[this.offset + i] != this.buffer[this.offset + otherStart + i - start]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean nextSyllableGram() {
+		while (this.gramIndex >= this.gramCount) {
+			if (this.gramSize > this.maxGram || this.gramSize > this.syllableCount) {
+				return false;
+			}
+			int size = this.gramSize++;
+			this.gramCount = 0;
+			this.gramIndex = 0;
+			if (this.direction != OutputDirection.FRONT) {
+				addSyllableGrams(this.syllableCount - size, this.syllableCount - 1);
+			}
+			if (this.direction != OutputDirection.BACK) {
+				// 双向输出时，此前加入的均为同一长度的后缀
+				addSyllableGrams(0, size - 1);
+			}
+		}
+		this.start = this.gramStarts[this.gramIndex];
+		this.end = this.gramEnds[this.gramIndex];
+		this.gramIndex++;
+		return true;
+	}
+
+	/**
+	 * 加入从音节first到音节last的切分
+	 */
+	private void addSyllableGrams(int first, int last) {
+		int start = syllableStart(first);
+		if (this.partialSyllable) {
+			for (int end = syllableStart(last) + 1; end < this.syllableEnds[last]; end++) {
+				addGram(start, end);
+			}
+		}
+		addGram(start, this.syllableEnds[last]);
+	}
+
+	private int syllableStart(int index) {
+		return index == 0 ? 0 : this.syllableEnds[index - 1];
+	}
+
+	private void addGram(int start, int end) {
+		for (int i = 0; i < this.gramCount; i++) {
+			if (sameChars(this.gramStarts[i], this.gramEnds[i], start, end)) {
+				return;
+			}
+		}
+		this.gramStarts = ArrayUtil.grow(this.gramStarts, this.gramCount + 1);
+		this.gramEnds = ArrayUtil.grow(this.gramEnds, this.gramCount + 1);
+		this.gramStarts[this.gramCount] = start;
+		this.gramEnds[this.gramCount] = end;
+		this.gramCount++;
+	}
+
+	/**
+	 *
+	 * @return 当前切分相对词元的起始位置
+	 */
+	int start() {
+		return this.start;
+	}
+
+	/**
+	 *
+	 * @return 当前切分相对词元的结束位置
+	 */
+	int end() {
+		return this.end;
+	}
+
+	/**
+	 *
+	 * @return 词元是否超过最大切分长度
+	 */
+	boolean isCapped() {
+		return (this.syllableUnit ? this.syllableCount : this.codePointCount) > this.maxGram;
+	}
+}
@@ -0,0 +1,293 @@
+package org.easy.search.analysis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 词元拼音转换结果缓存。
+ * <p>
+ * 由{@link PinyinTransformTokenFilterFactory}持有，同一字段类型的所有TokenStream共享，因此缓存键只需原词元文本。
+ * 缓存分为多段，每段为一个按访问顺序淘汰（LRU）的{@link LinkedHashMap}并各自加锁，按词元哈希值选择分段，
+ * 多个索引线程同时访问时很少竞争同一把锁。查找直接比较词元缓冲区，命中时不产生对象分配。
+ */
+public final class PinyinExpansionCache {
+
+	/**
+	 * 可缓存的最大拼音总字符数，超过时不缓存
+	 */
+	static final int MAX_CACHED_CHARS = 4096;
+
+	private final Segment[] segments;
+
+	private final int segmentMask;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 *
+	 * @param maxEntries
+	 *            最多缓存的词元个数
+	 */
+	public PinyinExpansionCache(int maxEntries) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be greater than zero");
+		}
+		// 分段数为2的幂，约为处理器数的4倍，且每段至少16项
+		int segmentCount = 1;
+		int target = Math.min(4 * Runtime.getRuntime().availableProcessors(), Math.max(1, maxEntries / 16));
+		while (segmentCount < target) {
+			segmentCount <<= 1;
+		}
+		this.segments = new Segment[segmentCount];
+		this.segmentMask = segmentCount - 1;
+		int perSegment = Math.max(1, maxEntries / segmentCount);
+		for (int i = 0; i < segmentCount; i++) {
+			this.segments[i] = new Segment(perSegment);
+		}
+	}
+
+	/**
+	 * 查找缓存
+	 *
+	 * @param buffer
+	 *            词元
+	 * @param offset
+	 *            起始位置
+	 * @param length
+	 *            长度
+	 * @param dictionary
+	 *            当前的词语拼音词典，可为null，使用其他词典生成的结果视为未缓存
+	 * @return 转换结果，未缓存时返回null
+	 */
+	Expansion get(char[] buffer, int offset, int length, PinyinWordDictionary dictionary) {
+		int hash = hash(buffer, offset, length);
+		Segment segment = this.segments[spread(hash) & this.segmentMask];
+		Expansion expansion;
+		synchronized (segment) {
+			segment.probe.set(buffer, offset, length, hash);
+			expansion = segment.get(segment.probe);
+			segment.probe.set(null, 0, 0, 0);
+		}
+		if (expansion != null && expansion.dictionary != dictionary) {
+			// 词典重新加载前生成的结果
+			expansion = null;
+		}
+		if (expansion == null) {
+			this.misses.increment();
+		} else {
+			this.hits.increment();
+		}
+		return expansion;
+	}
+
+	/**
+	 * 加入缓存
+	 *
+	 * @param buffer
+	 *            词元
+	 * @param offset
+	 *            起始位置
+	 * @param length
+	 *            长度
+	 * @param expansion
+	 *            转换结果
+	 */
+	void put(char[] buffer, int offset, int length, Expansion expansion) {
+		char[] text = new char[length];
+		System.arraycopy(buffer, offset, text, 0, length);
+		Key key = new Key();
+		key.set(text, 0, length, hash(text, 0, length));
+		Segment segment = this.segments[spread(key.hash) & this.segmentMask];
+		synchronized (segment) {
+			segment.put(key, expansion);
+		}
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return 缓存的词元个数
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 *
+	 * @return 命中次数
+	 */
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+
+	/**
+	 *
+	 * @return 未命中次数
+	 */
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+
+	/**
+	 *
+	 * @return 淘汰次数
+	 */
+	public long getEvictionCount() {
+		return this.evictions.sum();
+	}
+
+	private static int hash(char[] buffer, int offset, int length) {
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		return hash;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * 缓存分段
+	 */
+	private final class Segment extends LinkedHashMap<Key, Expansion> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int maxEntries;
+
+		/**
+		 * 查找用的键，只在持有分段锁时使用
+		 */
+		final Key probe = new Key();
+
+		Segment(int maxEntries) {
+			super(16, 0.75f, true);
+			this.maxEntries = maxEntries;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Expansion> eldest) {
+			if (size() > this.maxEntries) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * 缓存键，缓存中的键持有词元副本，查找用的键直接引用词元缓冲区
+	 */
+	private static final class Key {
+
+		char[] buffer;
+
+		int offset;
+
+		int length;
+
+		int hash;
+
+		void set(char[] buffer, int offset, int length, int hash) {
+			this.buffer = buffer;
+			this.offset = offset;
+			this.length = length;
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			if (other.hash != this.hash || other.length != this.length) {
+				return false;
+			}
+			for (int i = 0; i < this.length; i++) {
+				if (this.buffer[this.offset + i] != other.buffer[other.offset + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 一个词元的转换结果，不可变
+	 */
+	static final class Expansion {
+
+		/**
+		 * 全部拼音依次连接
+		 */
+		final char[] chars;
+
+		/**
+		 * 每个拼音在{@link #chars}中的结束位置
+		 */
+		final int[] ends;
+
+		/**
+		 * 每个拼音的音节个数，各拼音相同
+		 */
+		final int syllableCount;
+
+		/**
+		 * 每个拼音中各音节的结束位置，第i个拼音从i * syllableCount开始
+		 */
+		final int[] syllableEnds;
+
+		/**
+		 * 读音或组合是否因数量限制被截断
+		 */
+		final boolean truncated;
+
+		/**
+		 * 生成该结果时使用的词语拼音词典，词典重新加载后旧的结果不再使用，可为null
+		 */
+		final PinyinWordDictionary dictionary;
+
+		Expansion(char[] chars, int[] ends, int syllableCount, int[] syllableEnds, boolean truncated) {
+			this(chars, ends, syllableCount, syllableEnds, truncated, null);
+		}
+
+		Expansion(char[] chars, int[] ends, int syllableCount, int[] syllableEnds, boolean truncated,
+				PinyinWordDictionary dictionary) {
+			this.dictionary = dictionary;
+			this.chars = chars;
+			this.ends = ends;
+			this.syllableCount = syllableCount;
+			this.syllableEnds = syllableEnds;
+			this.truncated = truncated;
+		}
+	}
+}
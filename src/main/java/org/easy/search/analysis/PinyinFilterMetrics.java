@@ -0,0 +1,505 @@
+package org.easy.search.analysis;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrResourceLoader;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.update.processor.UpdateRequestProcessorFactory;
+import org.apache.solr.util.plugin.SolrCoreAware;
+
+/**
+ * 拼音过滤器运行指标。
+ * <p>
+ * 由过滤器工厂持有，同一字段类型的所有TokenStream共享。每个过滤器通过{@link Recorder}在本地累计，
+ * 在{@link org.apache.lucene.analysis.TokenStream#end()}和reset()时合并到{@link LongAdder}中，
+ * 每个词元只增加几次局部变量运算。配置了metricsName时注册到平台MBeanServer，
+ * 名称为org.easy.search.analysis:type=过滤器名,core=core名,name=metricsName（不在Solr中时没有core），
+ * 不随加载顺序变化，Solr启用JMX时可与Solr指标一起查看。
+ * <p>
+ * 同名注册替换已有的MBean：core重新加载时新工厂替换旧工厂的指标，因此同一core内的metricsName不能重复
+ * （如索引、查询分析器分别配置）。在Solr中注册的指标在core关闭时注销，旧工厂注销时不影响替换它的新指标。
+ * 注册的MBean只弱引用指标，没有关闭通知时（如不在Solr中），工厂被回收后对应的MBean在下一次注册或注销时移除。
+ */
+public final class PinyinFilterMetrics implements PinyinFilterMetricsMBean {
+
+	/**
+	 * JMX域名
+	 */
+	public static final String DOMAIN = "org.easy.search.analysis";
+
+	/**
+	 * 分布区间的上限（含），最后一个区间无上限
+	 */
+	private static final int[] BUCKET_LIMITS = { 0, 1, 2, 4, 8, 16, 64, 256 };
+
+	private static final String[] BUCKETS = { "0", "1", "2", "3-4", "5-8", "9-16", "17-64", "65-256", ">256" };
+
+	/**
+	 * 当前注册的MBean，用于判断注销时名称是否已被新的指标替换
+	 */
+	private static final Map<ObjectName, Registration> REGISTERED = new HashMap<ObjectName, Registration>();
+
+	/**
+	 * 指标已被回收的MBean
+	 */
+	private static final ReferenceQueue<PinyinFilterMetrics> COLLECTED = new ReferenceQueue<PinyinFilterMetrics>();
+
+	private final String type;
+
+	private final LongAdder inputTokens = new LongAdder();
+
+	private final LongAdder emittedTokens = new LongAdder();
+
+	private final LongAdder cappedTokens = new LongAdder();
+
+	private final LongAdder dictionaryLookups = new LongAdder();
+
+	private final LongAdder dictionaryNanos = new LongAdder();
+
+	private final LongAdder[] histogram = new LongAdder[BUCKETS.length];
+
+	private final LongAccumulator maxVariants = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * 转换结果缓存，可为null
+	 */
+	private volatile PinyinExpansionCache cache;
+
+	/**
+	 * 已注册的MBean，未注册时为null
+	 */
+	private Registration registration;
+
+	/**
+	 *
+	 * @param type
+	 *            过滤器名，作为JMX名称的type
+	 */
+	public PinyinFilterMetrics(String type) {
+		this.type = type;
+		for (int i = 0; i < this.histogram.length; i++) {
+			this.histogram[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * 注册到平台MBeanServer，见{@link #register(String, ResourceLoader)}
+	 *
+	 * @param name
+	 *            指标名称，通常为字段类型名
+	 * @throws IllegalStateException
+	 *             已注册或注册失败
+	 */
+	public void register(String name) {
+		register(name, null);
+	}
+
+	/**
+	 * 注册到平台MBeanServer，替换同名的MBean，并移除指标已被回收的MBean。资源加载器为Solr的加载器时，
+	 * JMX名称包含core名，core关闭时注销
+	 *
+	 * @param name
+	 *            指标名称，通常为字段类型名
+	 * @param loader
+	 *            工厂的资源加载器，可为null
+	 * @throws IllegalStateException
+	 *             已注册或注册失败
+	 */
+	public synchronized void register(String name, ResourceLoader loader) {
+		if (this.registration != null) {
+			throw new IllegalStateException("Metrics already registered as " + this.registration.objectName);
+		}
+		String core = loader instanceof SolrResourceLoader
+				? ((SolrResourceLoader) loader).getCoreProperties().getProperty("solr.core.name") : null;
+		try {
+			ObjectName objectName = new ObjectName(DOMAIN + ":type=" + this.type
+					+ (core != null ? ",core=" + ObjectName.quote(core) : "") + ",name=" + ObjectName.quote(name));
+			Registration registration = new Registration(this, objectName);
+			synchronized (REGISTERED) {
+				unregisterCollected();
+				// core重新加载时替换旧工厂的指标
+				if (REGISTERED.remove(objectName) != null) {
+					unregister(objectName);
+				}
+				ManagementFactory.getPlatformMBeanServer().registerMBean(
+						new StandardMBean(registration, PinyinFilterMetricsMBean.class), objectName);
+				REGISTERED.put(objectName, registration);
+			}
+			this.registration = registration;
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register metrics " + name, e);
+		}
+		if (core != null) {
+			// 分析组件不能实现SolrCoreAware，由加载器创建的监听器在core创建后添加关闭回调
+			((SolrResourceLoader) loader).newInstance(CoreCloseListener.class.getName(), CoreCloseListener.class,
+					new String[0], new Class<?>[] { PinyinFilterMetrics.class }, new Object[] { this });
+		}
+	}
+
+	/**
+	 * 从平台MBeanServer注销，名称已被新的指标替换时不注销
+	 */
+	public synchronized void unregister() {
+		synchronized (REGISTERED) {
+			unregisterCollected();
+			if (this.registration == null) {
+				return;
+			}
+			if (REGISTERED.remove(this.registration.objectName, this.registration)) {
+				unregister(this.registration.objectName);
+			}
+		}
+		this.registration.clear();
+		this.registration = null;
+	}
+
+	/**
+	 * 注销指标已被回收的MBean，调用时持有REGISTERED的锁
+	 */
+	private static void unregisterCollected() {
+		Reference<? extends PinyinFilterMetrics> ref;
+		while ((ref = COLLECTED.poll()) != null) {
+			Registration registration = (Registration) ref;
+			if (REGISTERED.remove(registration.objectName, registration)) {
+				unregister(registration.objectName);
+			}
+		}
+	}
+
+	private static void unregister(ObjectName objectName) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			// 已注销
+		}
+	}
+
+	/**
+	 *
+	 * @return 已注册的JMX名称，未注册时返回null
+	 */
+	public synchronized ObjectName getObjectName() {
+		return this.registration == null ? null : this.registration.objectName;
+	}
+
+	void setCache(PinyinExpansionCache cache) {
+		this.cache = cache;
+	}
+
+	@Override
+	public long getInputTokens() {
+		return this.inputTokens.sum();
+	}
+
+	@Override
+	public long getEmittedTokens() {
+		return this.emittedTokens.sum();
+	}
+
+	@Override
+	public double getExpansionRatio() {
+		long input = this.inputTokens.sum();
+		return input == 0 ? 0 : (double) this.emittedTokens.sum() / input;
+	}
+
+	@Override
+	public String[] getExpansionHistogramBuckets() {
+		return BUCKETS.clone();
+	}
+
+	@Override
+	public long[] getExpansionHistogram() {
+		long[] counts = new long[this.histogram.length];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = this.histogram[i].sum();
+		}
+		return counts;
+	}
+
+	@Override
+	public long getMaxVariants() {
+		return this.maxVariants.get();
+	}
+
+	@Override
+	public long getCappedTokens() {
+		return this.cappedTokens.sum();
+	}
+
+	@Override
+	public long getDictionaryLookups() {
+		return this.dictionaryLookups.sum();
+	}
+
+	@Override
+	public double getDictionaryLookupMillis() {
+		return this.dictionaryNanos.sum() / 1000000.0;
+	}
+
+	@Override
+	public long getCacheHits() {
+		PinyinExpansionCache cache = this.cache;
+		return cache == null ? 0 : cache.getHitCount();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		PinyinExpansionCache cache = this.cache;
+		return cache == null ? 0 : cache.getMissCount();
+	}
+
+	@Override
+	public long getCacheEvictions() {
+		PinyinExpansionCache cache = this.cache;
+		return cache == null ? 0 : cache.getEvictionCount();
+	}
+
+	@Override
+	public void reset() {
+		this.inputTokens.reset();
+		this.emittedTokens.reset();
+		this.cappedTokens.reset();
+		this.dictionaryLookups.reset();
+		this.dictionaryNanos.reset();
+		for (LongAdder adder : this.histogram) {
+			adder.reset();
+		}
+		this.maxVariants.reset();
+	}
+
+	private static int bucket(int emitted) {
+		for (int i = 0; i < BUCKET_LIMITS.length; i++) {
+			if (emitted <= BUCKET_LIMITS[i]) {
+				return i;
+			}
+		}
+		return BUCKET_LIMITS.length;
+	}
+
+	/**
+	 * 单个过滤器的本地计数，非线程安全
+	 */
+	static final class Recorder {
+
+		private final PinyinFilterMetrics metrics;
+
+		private long inputTokens;
+
+		private long emittedTokens;
+
+		private long cappedTokens;
+
+		private long dictionaryLookups;
+
+		private long dictionaryNanos;
+
+		private final long[] histogram = new long[BUCKETS.length];
+
+		private int maxVariants;
+
+		Recorder(PinyinFilterMetrics metrics) {
+			this.metrics = metrics;
+		}
+
+		/**
+		 * 记录一个输入词元
+		 *
+		 * @param emitted
+		 *            该词元的输出词元数
+		 * @param capped
+		 *            输出是否因数量限制被截断
+		 */
+		void term(int emitted, boolean capped) {
+			this.inputTokens++;
+			this.emittedTokens += emitted;
+			this.histogram[bucket(emitted)]++;
+			if (emitted > this.maxVariants) {
+				this.maxVariants = emitted;
+			}
+			if (capped) {
+				this.cappedTokens++;
+			}
+		}
+
+		/**
+		 * 记录一次词典查找
+		 *
+		 * @param nanos
+		 *            耗时，单位纳秒
+		 */
+		void dictionaryLookup(long nanos) {
+			this.dictionaryLookups++;
+			this.dictionaryNanos += nanos;
+		}
+
+		/**
+		 * 合并到共享计数并清零本地计数
+		 */
+		void flush() {
+			if (this.inputTokens == 0 && this.dictionaryLookups == 0) {
+				return;
+			}
+			this.metrics.inputTokens.add(this.inputTokens);
+			this.metrics.emittedTokens.add(this.emittedTokens);
+			this.metrics.cappedTokens.add(this.cappedTokens);
+			this.metrics.dictionaryLookups.add(this.dictionaryLookups);
+			this.metrics.dictionaryNanos.add(this.dictionaryNanos);
+			for (int i = 0; i < this.histogram.length; i++) {
+				if (this.histogram[i] != 0) {
+					this.metrics.histogram[i].add(this.histogram[i]);
+					this.histogram[i] = 0;
+				}
+			}
+			this.metrics.maxVariants.accumulate(this.maxVariants);
+			this.inputTokens = 0;
+			this.emittedTokens = 0;
+			this.cappedTokens = 0;
+			this.dictionaryLookups = 0;
+			this.dictionaryNanos = 0;
+			this.maxVariants = 0;
+		}
+	}
+
+	/**
+	 * core关闭时注销指标。Solr只对少数插件类型（如更新处理器工厂）调用{@link SolrCoreAware}，
+	 * 因此继承{@link UpdateRequestProcessorFactory}，由{@link #register(String, ResourceLoader)}通过加载器创建，
+	 * 不在更新处理链中使用
+	 */
+	public static final class CoreCloseListener extends UpdateRequestProcessorFactory implements SolrCoreAware {
+
+		private final PinyinFilterMetrics metrics;
+
+		public CoreCloseListener(PinyinFilterMetrics metrics) {
+			this.metrics = metrics;
+		}
+
+		@Override
+		public void inform(SolrCore core) {
+			core.addCloseHook(new CloseHook() {
+				@Override
+				public void preClose(SolrCore core) {
+				}
+
+				@Override
+				public void postClose(SolrCore core) {
+					CoreCloseListener.this.metrics.unregister();
+				}
+			});
+		}
+
+		@Override
+		public UpdateRequestProcessor getInstance(SolrQueryRequest req, SolrQueryResponse rsp,
+				UpdateRequestProcessor next) {
+			return next;
+		}
+	}
+
+	/**
+	 * 注册到MBeanServer的对象，弱引用指标，不阻止工厂及其缓存被回收；指标被回收后各项返回0
+	 */
+	private static final class Registration extends WeakReference<PinyinFilterMetrics>
+			implements PinyinFilterMetricsMBean {
+
+		final ObjectName objectName;
+
+		Registration(PinyinFilterMetrics metrics, ObjectName objectName) {
+			super(metrics, COLLECTED);
+			this.objectName = objectName;
+		}
+
+		@Override
+		public long getInputTokens() {
+			PinyinFilterMetrics metrics = get();
+			return metrics == null ? 0 : metrics.getInputTokens();
+		}
+
+		@Override
+		public long getEmittedTokens() {
+			PinyinFilterMetrics metrics = get();
+			return metrics == null ? 0 : metrics.getEmittedTokens();
+		}
+
+		@Override
+		public double getExpansionRatio() {
+			PinyinFilterMetrics metrics = get();
+			return metrics == null ? 0 : metrics.getExpansionRatio();
+		}
+
+		@Override
+		public String[] getExpansionHistogramBuckets() {
+			return BUCKETS.clone();
+		}
+
+		@Override
+		public long[] getExpansionHistogram() {
+			PinyinFilterMetrics metrics = get();
+			return metrics == null ? new long[BUCKETS.length] : metrics.getExpansionHistogram();
+		}
+
+		@Override
+		public long getMaxVariants() {
+			PinyinFilterMetrics metrics = get();
+			return metrics == null ? 0 : metrics.getMaxVariants();
+		}
+
+		@Override
+		public long getCappedTokens() {
+			PinyinFilterMetrics metrics = get();
+			return metrics == null ? 0 : metrics.getCappedTokens();
+		}
+
+		@Override
+		public long getDictionaryLookups() {
+			PinyinFilterMetrics metrics = get();
+			return metrics == null ? 0 : metrics.getDictionaryLookups();
+		}
+
+		@Override
+		public double getDictionaryLookupMillis() {
+			PinyinFilterMetrics metrics = get();
+			return metrics == null ? 0 : metrics.getDictionaryLookupMillis();
+		}
+
+		@Override
+		public long getCacheHits() {
+			PinyinFilterMetrics metrics = get();
+			return metrics == null ? 0 : metrics.getCacheHits();
+		}
+
+		@Override
+		public long getCacheMisses() {
+			PinyinFilterMetrics metrics = get();
+			return metrics == null ? 0 : metrics.getCacheMisses();
+		}
+
+		@Override
+		public long getCacheEvictions() {
+			PinyinFilterMetrics metrics = get();
+			return metrics == null ? 0 : metrics.getCacheEvictions();
+		}
+
+		@Override
+		public void reset() {
+			PinyinFilterMetrics metrics = get();
+			if (metrics != null) {
+				metrics.reset();
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.easy.search.analysis;
+
+/**
+ * 拼音过滤器运行指标的JMX接口
+ */
+public interface PinyinFilterMetricsMBean {
+
+	/**
+	 *
+	 * @return 输入词元数
+	 */
+	long getInputTokens();
+
+	/**
+	 *
+	 * @return 输出词元数，包括输出的原词元
+	 */
+	long getEmittedTokens();
+
+	/**
+	 *
+	 * @return 平均每个输入词元的输出词元数
+	 */
+	double getExpansionRatio();
+
+	/**
+	 *
+	 * @return 每个输入词元输出词元数的分布区间
+	 */
+	String[] getExpansionHistogramBuckets();
+
+	/**
+	 *
+	 * @return 每个区间的输入词元数，与{@link #getExpansionHistogramBuckets()}对应
+	 */
+	long[] getExpansionHistogram();
+
+	/**
+	 *
+	 * @return 单个输入词元的最大输出词元数
+	 */
+	long getMaxVariants();
+
+	/**
+	 *
+	 * @return 输出因数量限制被截断的输入词元数
+	 */
+	long getCappedTokens();
+
+	/**
+	 *
+	 * @return 查找词典的词元数
+	 */
+	long getDictionaryLookups();
+
+	/**
+	 *
+	 * @return 查找词典的总耗时，单位毫秒
+	 */
+	double getDictionaryLookupMillis();
+
+	/**
+	 *
+	 * @return 转换结果缓存命中次数，未启用缓存时为0
+	 */
+	long getCacheHits();
+
+	/**
+	 *
+	 * @return 转换结果缓存未命中次数，未启用缓存时为0
+	 */
+	long getCacheMisses();
+
+	/**
+	 *
+	 * @return 转换结果缓存淘汰次数，未启用缓存时为0
+	 */
+	long getCacheEvictions();
+
+	/**
+	 * 清零除缓存外的所有计数
+	 */
+	void reset();
+}
@@ -0,0 +1,203 @@
+package org.easy.search.analysis;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 模糊音规则，将易混淆的声母、韵母（如z与zh、n与l、an与ang）归并为同一个规范拼写，索引端和查询端使用相同规则后，
+ * 模糊匹配即为精确匹配。
+ * <p>
+ * 规则以逗号分隔，每条为“规范拼写=被归并拼写”，如z=zh,c=ch,s=sh,n=l,an=ang,en=eng,in=ing。两边均为声母时按声母归并，
+ * 否则按韵母（声母之后的部分）归并：韵母整体不匹配时，介音（i、u、ü）之后的韵尾按规则归并，
+ * 如an=ang时jiang归并为jian、guang归并为guan。规则不能使首字母相同的音节归并为不同的首字母，
+ * 如l=n时单字母音节n（嗯）不变而na归并为la，查询端无法确定简拼n的规范首字母，这样的规则创建时即报错。
+ * 创建时为全部音节预先计算规范音节编号及拼写，转换时只做数组访问。线程安全。
+ */
+public final class PinyinFuzzyRules {
+
+	/**
+	 * 常用模糊音规则
+	 */
+	public static final String DEFAULT_RULES = "z=zh,c=ch,s=sh,n=l,an=ang,en=eng,in=ing";
+
+	/**
+	 * 全部声母，双字母声母在前
+	 */
+	private static final String[] INITIALS = { "zh", "ch", "sh", "b", "p", "m", "f", "d", "t", "n", "l", "g", "k",
+			"h", "j", "q", "x", "r", "z", "c", "s", "y", "w" };
+
+	/**
+	 * 韵母的介音，ü（pinyin4j拼写为u:）在前
+	 */
+	private static final String[] MEDIALS = { "u:", "i", "u", "v" };
+
+	/**
+	 * 规则文本
+	 */
+	private final String rules;
+
+	/**
+	 * 每个音节的规范音节编号，规范拼写相同的音节取编号最小的一个
+	 */
+	private final int[] canonicalIds;
+
+	/**
+	 * 每个音节的规范拼写
+	 */
+	private final char[][] spellings;
+
+	/**
+	 * 简拼首字母的规范首字母，下标为首字母
+	 */
+	private final char[] initials = new char[128];
+
+	private PinyinFuzzyRules(String rules, PinyinCharTable table, Map<String, String> initialMap,
+			Map<String, String> finalMap) {
+		this.rules = rules;
+		int count = table.getSyllableCount();
+		this.canonicalIds = new int[count];
+		this.spellings = new char[count][];
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		for (int id = 0; id < count; id++) {
+			String syllable = table.getSyllableString(id);
+			String initial = initialOf(syllable);
+			String fin = syllable.substring(initial.length());
+			String mappedInitial = initialMap.get(initial);
+			String spelling = (mappedInitial != null ? mappedInitial : initial) + mapFinal(fin, finalMap);
+			Integer canonical = ids.get(spelling);
+			if (canonical == null) {
+				canonical = id;
+				ids.put(spelling, canonical);
+			}
+			this.canonicalIds[id] = canonical;
+			this.spellings[id] = spelling.toCharArray();
+			// 简拼由拼写首字母生成，查询端只知道输入的首字母，因此首字母相同的音节规范首字母必须相同
+			char first = syllable.charAt(0);
+			if (first < this.initials.length) {
+				if (this.initials[first] != 0 && this.initials[first] != spelling.charAt(0)) {
+					throw new IllegalArgumentException("Fuzzy rules map syllables starting with '" + first
+							+ "' to different initials: " + rules);
+				}
+				this.initials[first] = spelling.charAt(0);
+			}
+		}
+	}
+
+	/**
+	 * 解析模糊音规则
+	 *
+	 * @param rules
+	 *            规则，如{@link #DEFAULT_RULES}
+	 * @return 模糊音规则，rules为null或空时返回null
+	 * @throws IllegalArgumentException
+	 *             规则格式错误，或使首字母相同的音节归并为不同的首字母
+	 */
+	public static PinyinFuzzyRules parse(String rules) {
+		if (rules == null || rules.trim().isEmpty()) {
+			return null;
+		}
+		Set<String> initials = new HashSet<String>(Arrays.asList(INITIALS));
+		Map<String, String> initialMap = new HashMap<String, String>();
+		Map<String, String> finalMap = new HashMap<String, String>();
+		for (String rule : rules.split(",")) {
+			String[] pair = rule.trim().split("=");
+			if (pair.length != 2 || pair[0].trim().isEmpty() || pair[1].trim().isEmpty()) {
+				throw new IllegalArgumentException("Invalid fuzzy rule: " + rule);
+			}
+			String canonical = pair[0].trim();
+			String merged = pair[1].trim();
+			boolean isInitial = initials.contains(canonical);
+			if (isInitial != initials.contains(merged)) {
+				throw new IllegalArgumentException("Fuzzy rule must map an initial to an initial or a final to a final: "
+						+ rule);
+			}
+			Map<String, String> map = isInitial ? initialMap : finalMap;
+			// 规则不传递，每个拼写只按一条规则归并
+			map.put(merged, canonical);
+		}
+		return new PinyinFuzzyRules(rules, PinyinCharTable.getInstance(), initialMap, finalMap);
+	}
+
+	/**
+	 *
+	 * @return 按规则归并后的韵母，整体不匹配时按介音之后的部分归并，无规则时原样返回
+	 */
+	private static String mapFinal(String fin, Map<String, String> finalMap) {
+		String mapped = finalMap.get(fin);
+		if (mapped != null) {
+			return mapped;
+		}
+		for (String medial : MEDIALS) {
+			if (fin.length() > medial.length() && fin.startsWith(medial)) {
+				mapped = finalMap.get(fin.substring(medial.length()));
+				if (mapped != null) {
+					return medial + mapped;
+				}
+			}
+		}
+		return fin;
+	}
+
+	/**
+	 *
+	 * @return 音节的声母，无声母时为空串
+	 */
+	private static String initialOf(String syllable) {
+		for (String initial : INITIALS) {
+			// 单字母音节（如m、n、r）本身为韵母
+			if (syllable.startsWith(initial) && syllable.length() > initial.length()) {
+				return initial;
+			}
+		}
+		return "";
+	}
+
+	/**
+	 *
+	 * @param id
+	 *            音节编号
+	 * @return 规范音节编号
+	 */
+	int canonicalId(int id) {
+		return this.canonicalIds[id];
+	}
+
+	/**
+	 *
+	 * @param id
+	 *            音节编号
+	 * @return 规范拼写，共享数组，调用方不得修改
+	 */
+	char[] spelling(int id) {
+		return this.spellings[id];
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            简拼首字母（小写）
+	 * @return 规范首字母，如n=l时l的规范首字母为n
+	 */
+	char initial(char c) {
+		return c < this.initials.length && this.initials[c] != 0 ? this.initials[c] : c;
+	}
+
+	/**
+	 *
+	 * @param syllable
+	 *            音节拼写（小写、无声调）
+	 * @return 规范拼写，不是音节时原样返回
+	 */
+	public String canonicalize(String syllable) {
+		int id = PinyinCharTable.getInstance().getSyllableId(syllable);
+		return id < 0 ? syllable : new String(this.spellings[id]);
+	}
+
+	@Override
+	public String toString() {
+		return this.rules;
+	}
+}
@@ -0,0 +1,296 @@
+package org.easy.search.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+import org.easy.search.analysis.PinyinTransformTokenFilter.OutputFormat;
+
+/**
+ * 拼音自动补全，以拼音前缀查找中文条目，不需要在索引中做NGram。
+ * <p>
+ * 构建时将每个条目转换为原文、全拼、简拼及混合拼音（ü写为v），以“拼音+分隔符+原文”为输入、权重为输出编译为FST。
+ * 查找时沿FST走完输入的前缀，再按权重取前N个路径，同一条目的多个拼音只返回一次，耗时与前缀长度及N有关，
+ * 与条目个数无关。输入不区分大小写，忽略空白，如“zhong guo”、“zg”、“zhongg”均可补全为中国。
+ * <p>
+ * 不支持payload和context。构建后线程安全。
+ */
+public final class PinyinLookup extends Lookup {
+
+	static final String CODEC_NAME = "PinyinLookup";
+
+	static final int VERSION_START = 0;
+
+	static final int VERSION_CURRENT = VERSION_START;
+
+	/**
+	 * 默认混合拼音的简拼长度
+	 */
+	public static final int DEFAULT_MIX_SHORT_LENGTH = 10;
+
+	/**
+	 * 默认每种拼音最多生成的个数
+	 */
+	public static final int DEFAULT_MAX_VARIANTS = 8;
+
+	/**
+	 * 拼音与原文之间的分隔符
+	 */
+	private static final char SEPARATOR = '\u001F';
+
+	private static final Comparator<Long> WEIGHT_COMPARATOR = new Comparator<Long>() {
+		@Override
+		public int compare(Long left, Long right) {
+			return left.compareTo(right);
+		}
+	};
+
+	/**
+	 * 混合拼音的简拼长度
+	 */
+	private final int mixShortLength;
+
+	/**
+	 * 每种拼音最多生成的个数
+	 */
+	private final int maxVariants;
+
+	/**
+	 * 每个多音字最多使用的读音个数
+	 */
+	private final int maxReadings;
+
+	/**
+	 * 词语拼音词典，可为null
+	 */
+	private final PinyinWordDictionary dictionary;
+
+	/**
+	 * 拼音+分隔符+原文到代价（{@link Integer#MAX_VALUE}减权重）的FST，未构建时为null
+	 */
+	private FST<Long> fst;
+
+	/**
+	 * 条目个数
+	 */
+	private long count;
+
+	/**
+	 * 一个条目最多的拼音个数，用于确定查找时的队列长度
+	 */
+	private int maxForms;
+
+	public PinyinLookup() {
+		this(DEFAULT_MIX_SHORT_LENGTH, DEFAULT_MAX_VARIANTS, PinyinTransformTokenFilter.DEFAULT_MAX_READINGS, null);
+	}
+
+	/**
+	 *
+	 * @param mixShortLength
+	 *            混合拼音的简拼长度，0为不生成混合拼音
+	 * @param maxVariants
+	 *            简拼、全拼、混合拼音各自最多生成的个数，常用读音优先，0为不限制
+	 * @param maxReadings
+	 *            每个多音字最多使用的读音个数，按常用程度保留，0为不限制
+	 * @param dictionary
+	 *            词语拼音词典，可为null
+	 */
+	public PinyinLookup(int mixShortLength, int maxVariants, int maxReadings, PinyinWordDictionary dictionary) {
+		this.mixShortLength = mixShortLength;
+		this.maxVariants = maxVariants;
+		this.maxReadings = maxReadings;
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public void build(InputIterator iterator) throws IOException {
+		if (iterator.hasPayloads()) {
+			throw new IllegalArgumentException("this suggester doesn't support payloads");
+		}
+		if (iterator.hasContexts()) {
+			throw new IllegalArgumentException("this suggester doesn't support contexts");
+		}
+		PinyinTermTransformer transformer = new PinyinTermTransformer(new PinyinTransformOptions()
+				.setOutputFormat(OutputFormat.BOTH).setMinTermLength(1).setMixShortLength(this.mixShortLength)
+				.setMaxVariants(this.maxVariants).setMaxReadings(this.maxReadings).setDictionary(this.dictionary), null);
+		// FST要求输入按UTF-16顺序添加，相同输入取最大权重
+		TreeMap<String, Long> inputs = new TreeMap<String, Long>();
+		Set<String> forms = new HashSet<String>();
+		CharsRefBuilder surface = new CharsRefBuilder();
+		long count = 0;
+		int maxForms = 0;
+		BytesRef text;
+		while ((text = iterator.next()) != null) {
+			long weight = iterator.weight();
+			if (weight < 0 || weight > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("weight must be between 0 and Integer.MAX_VALUE: " + weight);
+			}
+			surface.copyUTF8Bytes(text);
+			String original = surface.toString();
+			if (original.indexOf(SEPARATOR) >= 0) {
+				throw new IllegalArgumentException("input contains reserved separator character: " + original);
+			}
+			forms.clear();
+			forms.add(normalize(original));
+			if (transformer.transform(surface.chars(), surface.length()) != null) {
+				while (transformer.next()) {
+					forms.add(normalize(new String(transformer.buffer(), transformer.offset(), transformer.length())));
+				}
+			}
+			for (String form : forms) {
+				String key = form + SEPARATOR + original;
+				Long cost = inputs.get(key);
+				long newCost = Integer.MAX_VALUE - weight;
+				if (cost == null || newCost < cost) {
+					inputs.put(key, newCost);
+				}
+			}
+			maxForms = Math.max(maxForms, forms.size());
+			count++;
+		}
+
+		PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+		Builder<Long> builder = new Builder<Long>(FST.INPUT_TYPE.BYTE2, outputs);
+		IntsRefBuilder input = new IntsRefBuilder();
+		for (Map.Entry<String, Long> entry : inputs.entrySet()) {
+			builder.add(Util.toUTF16(entry.getKey(), input), entry.getValue());
+		}
+		this.fst = builder.finish();
+		this.count = count;
+		this.maxForms = maxForms;
+	}
+
+	@Override
+	public List<LookupResult> lookup(CharSequence key, Set<BytesRef> contexts, boolean onlyMorePopular, int num)
+			throws IOException {
+		if (contexts != null) {
+			throw new IllegalArgumentException("this suggester doesn't support contexts");
+		}
+		FST<Long> fst = this.fst;
+		if (fst == null || num <= 0) {
+			return Collections.emptyList();
+		}
+		String prefix = normalize(key);
+		if (prefix.indexOf(SEPARATOR) >= 0) {
+			return Collections.emptyList();
+		}
+
+		// 沿FST走完前缀
+		FST.Arc<Long> arc = fst.getFirstArc(new FST.Arc<Long>());
+		FST.BytesReader reader = fst.getBytesReader();
+		Long prefixOutput = fst.outputs.getNoOutput();
+		for (int i = 0; i < prefix.length(); i++) {
+			if (fst.findTargetArc(prefix.charAt(i), arc, arc, reader) == null) {
+				return Collections.emptyList();
+			}
+			prefixOutput = fst.outputs.add(prefixOutput, arc.output);
+		}
+
+		// 同一条目的多个拼音可能都以该前缀开头，只取第一个（代价最小）
+		final Set<String> seen = new HashSet<String>();
+		Util.TopNSearcher<Long> searcher = new Util.TopNSearcher<Long>(fst, num, num * Math.max(this.maxForms, 1),
+				WEIGHT_COMPARATOR) {
+			@Override
+			protected boolean acceptResult(IntsRef input, Long output) {
+				return seen.add(surfaceOf(input));
+			}
+		};
+		searcher.addStartPaths(arc, prefixOutput, true, new IntsRefBuilder());
+		List<LookupResult> results = new ArrayList<LookupResult>(num);
+		for (Util.Result<Long> result : searcher.search()) {
+			results.add(new LookupResult(surfaceOf(result.input), Integer.MAX_VALUE - result.output));
+		}
+		return results;
+	}
+
+	/**
+	 *
+	 * @param input
+	 *            前缀之后的路径
+	 * @return 分隔符之后的原文
+	 */
+	private static String surfaceOf(IntsRef input) {
+		int end = input.offset + input.length;
+		int i = input.offset;
+		while (i < end && input.ints[i] != SEPARATOR) {
+			i++;
+		}
+		StringBuilder sb = new StringBuilder(end - i);
+		for (i++; i < end; i++) {
+			sb.append((char) input.ints[i]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 规范化拼音或查找输入：转为小写，去掉空白，ü（pinyin4j拼写为u:）写为v
+	 */
+	private static String normalize(CharSequence text) {
+		StringBuilder sb = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = Character.toLowerCase(text.charAt(i));
+			if (Character.isWhitespace(c)) {
+				continue;
+			}
+			if (c == 'u' && i + 1 < text.length() && text.charAt(i + 1) == ':') {
+				sb.append('v');
+				i++;
+			} else if (c == 'ü') {
+				sb.append('v');
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public boolean store(DataOutput output) throws IOException {
+		if (this.fst == null) {
+			return false;
+		}
+		CodecUtil.writeHeader(output, CODEC_NAME, VERSION_CURRENT);
+		output.writeVLong(this.count);
+		output.writeVInt(this.maxForms);
+		this.fst.save(output);
+		return true;
+	}
+
+	@Override
+	public boolean load(DataInput input) throws IOException {
+		CodecUtil.checkHeader(input, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+		this.count = input.readVLong();
+		this.maxForms = input.readVInt();
+		this.fst = new FST<Long>(input, PositiveIntOutputs.getSingleton());
+		return true;
+	}
+
+	@Override
+	public long getCount() {
+		return this.count;
+	}
+
+	@Override
+	public long ramBytesUsed() {
+		return this.fst == null ? 0 : this.fst.ramBytesUsed();
+	}
+}
@@ -0,0 +1,47 @@
+package org.easy.search.analysis;
+
+import java.io.IOException;
+
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.spelling.suggest.LookupFactory;
+
+/**
+ * 拼音自动补全工厂，在solrconfig.xml的SuggestComponent中以lookupImpl配置，参数见{@link PinyinLookup}
+ */
+public class PinyinLookupFactory extends LookupFactory {
+
+	/**
+	 * 保存FST的文件名
+	 */
+	public static final String FILENAME = "pinyin.fst";
+
+	@Override
+	public Lookup create(NamedList params, SolrCore core) {
+		int mixShortLength = getInt(params, "mixShort", PinyinLookup.DEFAULT_MIX_SHORT_LENGTH);
+		int maxVariants = getInt(params, "maxVariants", PinyinLookup.DEFAULT_MAX_VARIANTS);
+		int maxReadings = getInt(params, "maxReadings", PinyinTransformTokenFilter.DEFAULT_MAX_READINGS);
+		Object dictFiles = params.get("dict");
+		Object dictFormat = params.get("dictFormat");
+		PinyinWordDictionary dictionary;
+		try {
+			dictionary = PinyinTransformTokenFilterFactory.loadDictionary(core.getResourceLoader(),
+					dictFiles != null ? dictFiles.toString() : null,
+					dictFormat != null ? dictFormat.toString() : PinyinTransformTokenFilterFactory.DICT_FORMAT_TEXT);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to load pinyin dictionary: " + dictFiles, e);
+		}
+		return new PinyinLookup(mixShortLength, maxVariants, maxReadings, dictionary);
+	}
+
+	private static int getInt(NamedList<?> params, String name, int defaultValue) {
+		Object value = params.get(name);
+		return value != null ? Integer.parseInt(value.toString()) : defaultValue;
+	}
+
+	@Override
+	public String storeFileName() {
+		return FILENAME;
+	}
+}
@@ -9,7 +9,7 @@ import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
-import org.apache.lucene.analysis.util.CharacterUtils;
+import org.apache.lucene.util.ArrayUtil;
 
 public class PinyinNGramTokenFilter extends TokenFilter {
 
@@ -21,16 +21,23 @@ public class PinyinNGramTokenFilter extends TokenFilter {
 	 */
 	public static final OutputDirection DEFAULT_OUTPUT_DIRECTION = OutputDirection.BOTH;
 
+	/**
+	 * 默认切分单位
+	 */
+	public static final GramUnit DEFAULT_GRAM_UNIT = GramUnit.CHAR;
+
 	private final int minGram;
 	private final int maxGram;
 	private OutputDirection outputDirection;
 
-	private final CharacterUtils charUtils;
+	/**
+	 * 当前词元的切分
+	 */
+	private final PinyinEdgeGrams grams;
 
-	private char[] curTermBuffer;
+	private char[] curTermBuffer = new char[16];
 	private int curTermLength;
-	private int curCodePointCount;
-	private int curGramSize;
+	private boolean hasCurTerm = false;
 
 	private int savePosIncr;
 	private int savePosLen;
@@ -40,14 +47,24 @@ public class PinyinNGramTokenFilter extends TokenFilter {
 	private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
 	private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
 	private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+	private final PinyinSyllableAttribute syllableAtt = addAttribute(PinyinSyllableAttribute.class);
+
+	/**
+	 * 运行指标的本地计数，可为null
+	 */
+	private final PinyinFilterMetrics.Recorder recorder;
 
-	private boolean front = false;
+	/**
+	 * 当前词元已输出的词元数
+	 */
+	private int termEmitted;
 
 	protected PinyinNGramTokenFilter(TokenStream input) {
 		super(input);
-		this.charUtils = CharacterUtils.getInstance();
 		this.minGram = DEFAULT_MIN_GRAM_SIZE;
 		this.maxGram = DEFAULT_MAX_GRAM_SIZE;
+		this.grams = new PinyinEdgeGrams(this.minGram, this.maxGram, this.outputDirection);
+		this.recorder = null;
 	}
 
 	/**
@@ -64,6 +81,48 @@ public class PinyinNGramTokenFilter extends TokenFilter {
 	 *            输出方向
 	 */
 	public PinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram, OutputDirection direction) {
+		this(input, minGram, maxGram, direction, null);
+	}
+
+	/**
+	 * 构造器
+	 * 
+	 * @param input
+	 *            {@link TokenStream} holding the input to be tokenized
+	 * @param minGram
+	 *            the smallest n-gram to generate
+	 * @param maxGram
+	 *            the largest n-gram to generate
+	 * @param direction
+	 *            输出方向
+	 * @param metrics
+	 *            运行指标，可为null
+	 */
+	public PinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram, OutputDirection direction,
+			PinyinFilterMetrics metrics) {
+		this(input, minGram, maxGram, direction, DEFAULT_GRAM_UNIT, false, metrics);
+	}
+
+	/**
+	 * 构造器
+	 * 
+	 * @param input
+	 *            {@link TokenStream} holding the input to be tokenized
+	 * @param minGram
+	 *            the smallest n-gram to generate
+	 * @param maxGram
+	 *            the largest n-gram to generate
+	 * @param direction
+	 *            输出方向
+	 * @param gramUnit
+	 *            切分单位，按字符或按音节，按音节时minGram、maxGram以音节计
+	 * @param partialSyllable
+	 *            按音节切分时，是否输出末尾不完整的音节
+	 * @param metrics
+	 *            运行指标，可为null
+	 */
+	public PinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram, OutputDirection direction,
+			GramUnit gramUnit, boolean partialSyllable, PinyinFilterMetrics metrics) {
 		super(input);
 
 		if (minGram < 1) {
@@ -74,102 +133,70 @@ public class PinyinNGramTokenFilter extends TokenFilter {
 			throw new IllegalArgumentException("minGram must not be greater than maxGram");
 		}
 
-		this.charUtils = CharacterUtils.getInstance();
 		this.minGram = minGram;
 		this.maxGram = maxGram;
 		this.outputDirection = direction;
+		this.grams = new PinyinEdgeGrams(minGram, maxGram, direction, gramUnit == GramUnit.SYLLABLE,
+				partialSyllable);
+		this.recorder = metrics == null ? null : new PinyinFilterMetrics.Recorder(metrics);
 	}
 
 	@Override
 	public final boolean incrementToken() throws IOException {
 		while (true) {
-			if (curTermBuffer == null) {
+			if (!hasCurTerm) {
 				if (!input.incrementToken()) {
 					return false;
 				} else {
-					curTermBuffer = termAtt.buffer().clone();
 					curTermLength = termAtt.length();
-					curCodePointCount = charUtils.codePointCount(termAtt);
-					curGramSize = minGram;
+					curTermBuffer = ArrayUtil.grow(curTermBuffer, curTermLength);
+					System.arraycopy(termAtt.buffer(), 0, curTermBuffer, 0, curTermLength);
+					hasCurTerm = true;
+					grams.reset(curTermBuffer, 0, curTermLength, syllableAtt.getSyllableEnds(),
+							syllableAtt.getSyllableCount());
 
 					savePosIncr += posIncrAtt.getPositionIncrement();
 					savePosLen = posLenAtt.getPositionLength();
 				}
 			}
-			if (curGramSize <= maxGram) { // if we have hit the end of our
-											// n-gram
-				// size range, quit
-				if (curGramSize <= curCodePointCount) { // if the remaining
-														// input is
-					// too short, we can't
-					// generate any n-grams
-					// grab gramSize chars from front or back
-					clearAttributes();
-					// offsetAtt.setOffset(tofStart, tofEnd);
-					// first ngram gets increment, others don't
-					if (curGramSize == minGram) {
-						posIncrAtt.setPositionIncrement(savePosIncr);
-						savePosIncr = 0;
-					} else {
-						posIncrAtt.setPositionIncrement(0);
-					}
-					posLenAtt.setPositionLength(savePosLen);
-
-					int start = 0, end = 0;
-					
-					switch (outputDirection) {
-					case FRONT:
-						front = false;
-						start = 0;
-						end = start + curGramSize;
-						offsetAtt.setOffset(start, end);
-						termAtt.copyBuffer(curTermBuffer, start, curGramSize);
-						this.typeAtt.setType("NGram");
-						break;
-					case BACK:
-						front = true;
-						// back
-						start = curTermLength - curGramSize;
-						end = start + curGramSize;
-						offsetAtt.setOffset(start, end);
-						termAtt.copyBuffer(curTermBuffer, start, curGramSize);
-						this.typeAtt.setType("NGram");
-						break;
-					default:
-						if (!front) {
-							front = true;
-							// back
-							start = curTermLength - curGramSize;
-							end = start + curGramSize;
-							offsetAtt.setOffset(start, end);
-							termAtt.copyBuffer(curTermBuffer, start, curGramSize);
-							this.typeAtt.setType("NGram");
-							return true;
-						} else {
-							// front
-							front = false;
-							start = 0;
-							end = start + curGramSize;
-							offsetAtt.setOffset(start, end);
-							termAtt.copyBuffer(curTermBuffer, start, curGramSize);
-							this.typeAtt.setType("NGram");
-						}
-						break;
-					}
-
-					curGramSize++;
-					return true;
-				}
+			if (grams.next()) {
+				clearAttributes();
+				// first ngram gets increment, others don't
+				posIncrAtt.setPositionIncrement(savePosIncr);
+				savePosIncr = 0;
+				posLenAtt.setPositionLength(savePosLen);
+				offsetAtt.setOffset(grams.start(), grams.end());
+				termAtt.copyBuffer(curTermBuffer, grams.start(), grams.end() - grams.start());
+				typeAtt.setType("NGram");
+				termEmitted++;
+				return true;
+			}
+
+			if (recorder != null) {
+				// 超过最大长度的部分不输出
+				recorder.term(termEmitted, grams.isCapped());
 			}
+			termEmitted = 0;
+			hasCurTerm = false;
+		}
+	}
 
-			curTermBuffer = null;
+	@Override
+	public void end() throws IOException {
+		super.end();
+		if (recorder != null) {
+			recorder.flush();
 		}
 	}
 
 	@Override
 	public void reset() throws IOException {
 		super.reset();
-		curTermBuffer = null;
+		if (recorder != null) {
+			recorder.flush();
+		}
+		termEmitted = 0;
+		hasCurTerm = false;
 		savePosIncr = 0;
 	}
 
@@ -218,4 +245,40 @@ public class PinyinNGramTokenFilter extends TokenFilter {
 		}
 
 	}
+
+	/**
+	 * 切分单位
+	 */
+	public static enum GramUnit {
+
+		/** 按字符切分 */
+		CHAR {
+			@Override
+			public String getLabel() {
+				return "char";
+			}
+		},
+
+		/** 按音节切分 */
+		SYLLABLE {
+			@Override
+			public String getLabel() {
+				return "syllable";
+			}
+		};
+
+		public abstract String getLabel();
+
+		// Get the appropriate GramUnit from a string
+		public static GramUnit getGramUnit(String unit) {
+			if (CHAR.getLabel().equals(unit)) {
+				return CHAR;
+			}
+			if (SYLLABLE.getLabel().equals(unit)) {
+				return SYLLABLE;
+			}
+			return null;
+		}
+
+	}
 }
@@ -1,16 +1,33 @@
 package org.easy.search.analysis;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.easy.search.analysis.PinyinNGramTokenFilter.GramUnit;
 import org.easy.search.analysis.PinyinNGramTokenFilter.OutputDirection;
 
-public class PinyinNGramTokenFilterFactory extends TokenFilterFactory {
+public class PinyinNGramTokenFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
 	private final int maxGramSize;
 	private final int minGramSize;
 	private final OutputDirection outputDirection;
+	private final GramUnit gramUnit;
+	private final boolean partialSyllable;
+
+	/**
+	 * 运行指标
+	 */
+	private final PinyinFilterMetrics metrics = new PinyinFilterMetrics("PinyinNGramTokenFilter");
+
+	/**
+	 * 运行指标的JMX名称，未配置时为null
+	 */
+	private final String metricsName;
 
 	/**
 	 * 
@@ -22,13 +39,34 @@ public class PinyinNGramTokenFilterFactory extends TokenFilterFactory {
 		maxGramSize = getInt(args, "maxGram", PinyinNGramTokenFilter.DEFAULT_MAX_GRAM_SIZE);
 		this.outputDirection = OutputDirection.getOutputDirection(
 				get(args, "outputDirection", PinyinNGramTokenFilter.DEFAULT_OUTPUT_DIRECTION.getLabel()));
+		this.gramUnit = GramUnit.getGramUnit(get(args, "gramUnit",
+				Arrays.asList(GramUnit.CHAR.getLabel(), GramUnit.SYLLABLE.getLabel()),
+				PinyinNGramTokenFilter.DEFAULT_GRAM_UNIT.getLabel()));
+		this.partialSyllable = getBoolean(args, "partialSyllable", false);
+		this.metricsName = get(args, "metricsName");
 		if (!args.isEmpty()) {
 			throw new IllegalArgumentException("Unknown parameters: " + args);
 		}
 	}
 
+	@Override
+	public void inform(ResourceLoader loader) throws IOException {
+		if (this.metricsName != null) {
+			this.metrics.register(this.metricsName, loader);
+		}
+	}
+
 	@Override
 	public TokenFilter create(TokenStream input) {
-		return new PinyinNGramTokenFilter(input, minGramSize, maxGramSize, outputDirection);
+		return new PinyinNGramTokenFilter(input, minGramSize, maxGramSize, outputDirection, gramUnit,
+				partialSyllable, metrics);
+	}
+
+	/**
+	 * 
+	 * @return 运行指标，在词元流end()或reset()后更新
+	 */
+	public PinyinFilterMetrics getMetrics() {
+		return this.metrics;
 	}
 }
@@ -0,0 +1,523 @@
+package org.easy.search.analysis;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * 连续拼音切分过滤器，用于查询端，将用户输入的连续拼音（如zhongguoren）切分为音节。
+ * <p>
+ * 以{@link PinyinSyllableTrie}查找每个位置开始的音节，动态规划求代价最小的若干种切分：完整音节代价为1，
+ * 简拼首字母代价为2，因此xian优先切分为xian，其次为xi an。每种切分的每个音节输出一个词元，
+ * 与{@link PinyinTransformTokenFilter}按音节（syllable）或图模式输出的全拼、简拼首字母相同，
+ * 可以短语查询匹配。耗时与输入长度成线性关系。
+ * <p>
+ * 多种切分以词元图输出：最优切分占用连续位置，其余切分经由各自的中间位置，以位置长度连接到同一个结束位置；
+ * 原词元（可选）跨越全部位置。不能完整切分的词元原样输出。
+ * <p>
+ * Lucene 6.0的QueryBuilder忽略位置长度，会把其余切分的中间位置依次排在最优切分之后，生成的短语查询无法匹配，
+ * 因此默认只输出最优切分。输出多种切分需要能处理词元图的查询解析器（Lucene 6.5起的QueryBuilder图查询）。
+ * <p>
+ * 二进制模式下每种切分以{@link PinyinSyllableCodec}编码为一个词元，与原词元并列在同一位置，
+ * 匹配以二进制模式输出的{@link PinyinTransformTokenFilter}。
+ */
+public final class PinyinSegmentTokenFilter extends TokenFilter {
+
+	/**
+	 * 默认最多输出的切分个数
+	 */
+	public static final int DEFAULT_MAX_SEGMENTATIONS = 1;
+
+	/**
+	 * 完整音节的代价
+	 */
+	private static final int SYLLABLE_COST = 1;
+
+	/**
+	 * 简拼首字母的代价
+	 */
+	private static final int INITIAL_COST = 2;
+
+	/**
+	 * 简拼首字母在切分中的音节编号
+	 */
+	private static final int INITIAL = -1;
+
+	/**
+	 * 二进制模式下待输出词元的音节编号，起止位置为编码在{@link #binaryChars}中的位置
+	 */
+	private static final int BINARY = Integer.MIN_VALUE + 1;
+
+	private final PinyinSyllableTrie trie = PinyinSyllableTrie.getInstance();
+
+	private final PinyinCharTable table = PinyinCharTable.getInstance();
+
+	/**
+	 * 最多输出的切分个数
+	 */
+	private final int maxSegmentations;
+
+	/**
+	 * 是否允许简拼首字母
+	 */
+	private final boolean initials;
+
+	/**
+	 * 原词元输出标识
+	 */
+	private final boolean isOutOriginalTerm;
+
+	/**
+	 * 模糊音规则，可为null
+	 */
+	private final PinyinFuzzyRules fuzzy;
+
+	/**
+	 * 是否以音节编码输出
+	 */
+	private final boolean binary;
+
+	/**
+	 * 二进制模式下各切分的编码，依次连接
+	 */
+	private char[] binaryChars = new char[16];
+
+	private int[] codes = new int[16];
+
+	/**
+	 * 当前词元
+	 */
+	private char[] curTermBuffer = new char[16];
+
+	private int curTermLength;
+
+	private int curPosIncr;
+
+	private int curStartOffset;
+
+	private int curEndOffset;
+
+	/**
+	 * 每个位置保留的最优部分切分：代价、上一位置、上一位置中的序号、最后一段的音节编号
+	 */
+	private int[] costs = new int[16];
+
+	private int[] prevPositions = new int[16];
+
+	private int[] prevRanks = new int[16];
+
+	private int[] lastIds = new int[16];
+
+	/**
+	 * 每个位置保留的部分切分个数
+	 */
+	private int[] counts = new int[16];
+
+	private final int[] matchEnds;
+
+	private final int[] matchIds;
+
+	/**
+	 * 待输出词元：在当前词元中的起止位置、音节编号、位置增量、位置长度，原词元的音节编号为
+	 * {@link Integer#MIN_VALUE}
+	 */
+	private int[] emitStarts = new int[16];
+
+	private int[] emitEnds = new int[16];
+
+	private int[] emitIds = new int[16];
+
+	private int[] emitPosIncrs = new int[16];
+
+	private int[] emitPosLens = new int[16];
+
+	private int emitCount;
+
+	private int emitIndex;
+
+	/**
+	 * 回溯时每种切分的各段结束位置及音节编号（逆序）
+	 */
+	private int[] pathEnds = new int[16];
+
+	private int[] pathIds = new int[16];
+
+	private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+	private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+	private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+	private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
+	private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+
+	/**
+	 * 构造器
+	 *
+	 * @param input
+	 *            词元
+	 * @param maxSegmentations
+	 *            最多输出的切分个数，代价小的优先
+	 * @param initials
+	 *            是否允许简拼首字母，如zgr切分为z g r
+	 * @param isOutOriginalTerm
+	 *            原词元输出标识，与某种切分只有一个音节且相同时不重复输出
+	 */
+	public PinyinSegmentTokenFilter(TokenStream input, int maxSegmentations, boolean initials,
+			boolean isOutOriginalTerm) {
+		this(input, maxSegmentations, initials, isOutOriginalTerm, null);
+	}
+
+	/**
+	 * 构造器
+	 *
+	 * @param input
+	 *            词元
+	 * @param maxSegmentations
+	 *            最多输出的切分个数，代价小的优先
+	 * @param initials
+	 *            是否允许简拼首字母，如zgr切分为z g r
+	 * @param isOutOriginalTerm
+	 *            原词元输出标识，与某种切分只有一个音节且相同时不重复输出
+	 * @param fuzzy
+	 *            模糊音规则，音节及首字母输出前归并为规范拼写，需与索引端相同，可为null
+	 */
+	public PinyinSegmentTokenFilter(TokenStream input, int maxSegmentations, boolean initials,
+			boolean isOutOriginalTerm, PinyinFuzzyRules fuzzy) {
+		this(input, maxSegmentations, initials, isOutOriginalTerm, fuzzy, false);
+	}
+
+	/**
+	 * 构造器
+	 *
+	 * @param input
+	 *            词元
+	 * @param maxSegmentations
+	 *            最多输出的切分个数，代价小的优先
+	 * @param initials
+	 *            是否允许简拼首字母，如zgr切分为z g r
+	 * @param isOutOriginalTerm
+	 *            原词元输出标识，与某种切分只有一个音节且相同时不重复输出
+	 * @param fuzzy
+	 *            模糊音规则，音节及首字母输出前归并为规范拼写，需与索引端相同，可为null
+	 * @param binary
+	 *            是否将每种切分以{@link PinyinSyllableCodec}编码为一个词元输出
+	 */
+	public PinyinSegmentTokenFilter(TokenStream input, int maxSegmentations, boolean initials,
+			boolean isOutOriginalTerm, PinyinFuzzyRules fuzzy, boolean binary) {
+		super(input);
+		if (maxSegmentations < 1) {
+			throw new IllegalArgumentException("maxSegmentations must be greater than zero");
+		}
+		this.maxSegmentations = maxSegmentations;
+		this.initials = initials;
+		this.isOutOriginalTerm = isOutOriginalTerm;
+		this.fuzzy = fuzzy;
+		this.binary = binary;
+		this.matchEnds = new int[this.trie.getMaxSyllableLength()];
+		this.matchIds = new int[this.trie.getMaxSyllableLength()];
+	}
+
+	@Override
+	public boolean incrementToken() throws IOException {
+		while (this.emitIndex >= this.emitCount) {
+			if (!this.input.incrementToken()) {
+				return false;
+			}
+			this.curTermLength = this.termAtt.length();
+			this.curTermBuffer = ArrayUtil.grow(this.curTermBuffer, this.curTermLength);
+			System.arraycopy(this.termAtt.buffer(), 0, this.curTermBuffer, 0, this.curTermLength);
+			this.curPosIncr = this.posIncrAtt.getPositionIncrement();
+			this.curStartOffset = this.offsetAtt.startOffset();
+			this.curEndOffset = this.offsetAtt.endOffset();
+			this.emitCount = 0;
+			this.emitIndex = 0;
+			if (!segment()) {
+				// 不能切分的词元原样输出
+				return true;
+			}
+		}
+
+		int i = this.emitIndex++;
+		this.posIncrAtt.setPositionIncrement(this.emitPosIncrs[i]);
+		this.posLenAtt.setPositionLength(this.emitPosLens[i]);
+		int id = this.emitIds[i];
+		if (id == Integer.MIN_VALUE) {
+			this.termAtt.copyBuffer(this.curTermBuffer, 0, this.curTermLength);
+			this.offsetAtt.setOffset(this.curStartOffset, this.curEndOffset);
+			return true;
+		}
+		if (id == BINARY) {
+			this.termAtt.copyBuffer(this.binaryChars, this.emitStarts[i], this.emitEnds[i] - this.emitStarts[i]);
+			this.typeAtt.setType("binary_pinyin");
+			this.offsetAtt.setOffset(this.curStartOffset, this.curEndOffset);
+			return true;
+		}
+		if (id == INITIAL) {
+			char initial = Character.toLowerCase(this.curTermBuffer[this.emitStarts[i]]);
+			this.termAtt.setEmpty().append(this.fuzzy != null ? this.fuzzy.initial(initial) : initial);
+			this.typeAtt.setType("short_pinyin");
+		} else {
+			char[] syllable = spelling(id);
+			this.termAtt.copyBuffer(syllable, 0, syllable.length);
+			this.typeAtt.setType("syllable_pinyin");
+		}
+		if (this.curEndOffset - this.curStartOffset == this.curTermLength) {
+			this.offsetAtt.setOffset(this.curStartOffset + this.emitStarts[i], this.curStartOffset + this.emitEnds[i]);
+		} else {
+			// 词元与原文长度不同（如经过字符过滤），无法定位音节，使用整个词元的偏移量
+			this.offsetAtt.setOffset(this.curStartOffset, this.curEndOffset);
+		}
+		return true;
+	}
+
+	/**
+	 * 切分当前词元，生成待输出词元
+	 *
+	 * @return 不能切分时返回false
+	 */
+	private boolean segment() {
+		int length = this.curTermLength;
+		if (length == 0) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (!this.trie.isSyllableChar(this.curTermBuffer[i])) {
+				return false;
+			}
+		}
+
+		int k = this.maxSegmentations;
+		this.costs = ArrayUtil.grow(this.costs, (length + 1) * k);
+		this.prevPositions = ArrayUtil.grow(this.prevPositions, (length + 1) * k);
+		this.prevRanks = ArrayUtil.grow(this.prevRanks, (length + 1) * k);
+		this.lastIds = ArrayUtil.grow(this.lastIds, (length + 1) * k);
+		this.counts = ArrayUtil.grow(this.counts, length + 1);
+		for (int i = 0; i <= length; i++) {
+			this.counts[i] = 0;
+		}
+		this.counts[0] = 1;
+		this.costs[0] = 0;
+
+		// 动态规划，每个位置保留代价最小的k个部分切分
+		for (int i = 0; i < length; i++) {
+			int count = this.counts[i];
+			if (count == 0) {
+				continue;
+			}
+			int matched = this.trie.match(this.curTermBuffer, i, length - i, this.matchEnds, this.matchIds);
+			boolean initial = this.initials && this.trie.isInitial(this.curTermBuffer[i])
+					&& !(matched > 0 && this.matchEnds[0] == 1);
+			for (int r = 0; r < count; r++) {
+				int cost = this.costs[i * k + r];
+				for (int m = 0; m < matched; m++) {
+					insert(i + this.matchEnds[m], cost + SYLLABLE_COST, i, r, this.matchIds[m]);
+				}
+				if (initial) {
+					insert(i + 1, cost + INITIAL_COST, i, r, INITIAL);
+				}
+			}
+		}
+		int paths = this.counts[length];
+		if (paths == 0) {
+			return false;
+		}
+		if (this.binary) {
+			segmentBinary(length, paths);
+			return true;
+		}
+
+		// 回溯每种切分，最优切分的中间位置在前，结束位置为全部中间位置之后
+		int nodes = 0;
+		boolean singleSame = false;
+		this.emitCount = 0;
+		for (int p = 0; p < paths; p++) {
+			int segments = backtrack(length, p);
+			if (segments == 1 && this.lastIds[length * k + p] >= 0 && sameAsTerm(this.lastIds[length * k + p])) {
+				singleSame = true;
+			}
+			nodes += segments - 1;
+		}
+		int end = nodes + 1;
+		if (this.isOutOriginalTerm && !singleSame) {
+			addEmit(0, length, Integer.MIN_VALUE, end);
+		}
+		// 各切分的第一段均从开始位置出发
+		int base = 0;
+		for (int p = 0; p < paths; p++) {
+			int segments = backtrack(length, p);
+			int to = segments == 1 ? end : base + 1;
+			addEmit(0, this.pathEnds[segments - 1], this.pathIds[segments - 1], to);
+			base += segments - 1;
+		}
+		int startCount = this.emitCount;
+		base = 0;
+		for (int p = 0; p < paths; p++) {
+			int segments = backtrack(length, p);
+			for (int t = 1; t < segments; t++) {
+				int from = base + t;
+				int to = t == segments - 1 ? end : from + 1;
+				addEmit(this.pathEnds[segments - t], this.pathEnds[segments - t - 1], this.pathIds[segments - t - 1],
+						to - from);
+			}
+			base += segments - 1;
+		}
+		// 第一个词元沿用原词元的位置增量，开始位置上的其余词元为0，之后每个中间位置为1
+		for (int i = 0; i < this.emitCount; i++) {
+			this.emitPosIncrs[i] = i == 0 ? this.curPosIncr : i < startCount ? 0 : 1;
+		}
+		return true;
+	}
+
+	/**
+	 * 二进制模式下将每种切分编码为一个词元，与原词元并列在同一位置，编码相同的切分只输出一次
+	 */
+	private void segmentBinary(int length, int paths) {
+		this.emitCount = 0;
+		if (this.isOutOriginalTerm) {
+			addEmit(0, length, Integer.MIN_VALUE, 1);
+		}
+		int binaryLength = 0;
+		for (int p = 0; p < paths; p++) {
+			int segments = backtrack(length, p);
+			this.codes = ArrayUtil.grow(this.codes, segments);
+			for (int t = 0; t < segments; t++) {
+				int id = this.pathIds[segments - t - 1];
+				if (id == INITIAL) {
+					char initial = Character.toLowerCase(this.curTermBuffer[this.pathEnds[segments - t]]);
+					this.codes[t] = PinyinSyllableCodec
+							.initialCode(this.fuzzy != null ? this.fuzzy.initial(initial) : initial);
+				} else {
+					this.codes[t] = PinyinSyllableCodec.fullCode(this.fuzzy != null ? this.fuzzy.canonicalId(id) : id);
+				}
+			}
+			this.binaryChars = ArrayUtil.grow(this.binaryChars,
+					binaryLength + PinyinSyllableCodec.encodedLength(segments));
+			int end = binaryLength + PinyinSyllableCodec.encode(this.codes, segments, this.binaryChars, binaryLength);
+			if (!isEmitted(binaryLength, end)) {
+				addEmit(binaryLength, end, BINARY, 1);
+				binaryLength = end;
+			}
+		}
+		for (int i = 0; i < this.emitCount; i++) {
+			this.emitPosIncrs[i] = i == 0 ? this.curPosIncr : 0;
+		}
+	}
+
+	/**
+	 * 编码是否与已输出的某个编码相同
+	 */
+	private boolean isEmitted(int start, int end) {
+		for (int i = 0; i < this.emitCount; i++) {
+			if (this.emitIds[i] != BINARY || this.emitEnds[i] - this.emitStarts[i] != end - start) {
+				continue;
+			}
+			int j = 0;
+			while (j < end - start && this.binaryChars[this.emitStarts[i] + j] == this.binaryChars[start + j]) {
+				j++;
+			}
+			if (j == end - start) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 在位置end加入一个部分切分，保持按代价递增，代价相同时先加入的在前
+	 */
+	private void insert(int end, int cost, int prevPosition, int prevRank, int id) {
+		int k = this.maxSegmentations;
+		int count = this.counts[end];
+		int base = end * k;
+		if (count == k && cost >= this.costs[base + k - 1]) {
+			return;
+		}
+		int pos = count == k ? k - 1 : count;
+		while (pos > 0 && this.costs[base + pos - 1] > cost) {
+			this.costs[base + pos] = this.costs[base + pos - 1];
+			this.prevPositions[base + pos] = this.prevPositions[base + pos - 1];
+			this.prevRanks[base + pos] = this.prevRanks[base + pos - 1];
+			this.lastIds[base + pos] = this.lastIds[base + pos - 1];
+			pos--;
+		}
+		this.costs[base + pos] = cost;
+		this.prevPositions[base + pos] = prevPosition;
+		this.prevRanks[base + pos] = prevRank;
+		this.lastIds[base + pos] = id;
+		if (count < k) {
+			this.counts[end] = count + 1;
+		}
+	}
+
+	/**
+	 * 回溯位置end的第rank个切分，各段结束位置及音节编号逆序写入{@link #pathEnds}、{@link #pathIds}，
+	 * pathEnds[segments]为0
+	 *
+	 * @return 段数
+	 */
+	private int backtrack(int end, int rank) {
+		int k = this.maxSegmentations;
+		int segments = 0;
+		while (end > 0) {
+			this.pathEnds = ArrayUtil.grow(this.pathEnds, segments + 2);
+			this.pathIds = ArrayUtil.grow(this.pathIds, segments + 1);
+			int slot = end * k + rank;
+			this.pathEnds[segments] = end;
+			this.pathIds[segments] = this.lastIds[slot];
+			segments++;
+			end = this.prevPositions[slot];
+			rank = this.prevRanks[slot];
+		}
+		this.pathEnds[segments] = 0;
+		return segments;
+	}
+
+	/**
+	 * 音节拼写是否与当前词元相同
+	 */
+	private boolean sameAsTerm(int id) {
+		char[] syllable = spelling(id);
+		if (syllable.length != this.curTermLength) {
+			return false;
+		}
+		for (int i = 0; i < syllable.length; i++) {
+			if (syllable[i] != this.curTermBuffer[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return 音节拼写，有模糊音规则时为规范拼写
+	 */
+	private char[] spelling(int id) {
+		return this.fuzzy != null ? this.fuzzy.spelling(id) : this.table.getSyllable(id);
+	}
+
+	private void addEmit(int start, int end, int id, int posLen) {
+		int i = this.emitCount++;
+		this.emitStarts = ArrayUtil.grow(this.emitStarts, this.emitCount);
+		this.emitEnds = ArrayUtil.grow(this.emitEnds, this.emitCount);
+		this.emitIds = ArrayUtil.grow(this.emitIds, this.emitCount);
+		this.emitPosIncrs = ArrayUtil.grow(this.emitPosIncrs, this.emitCount);
+		this.emitPosLens = ArrayUtil.grow(this.emitPosLens, this.emitCount);
+		this.emitStarts[i] = start;
+		this.emitEnds[i] = end;
+		this.emitIds[i] = id;
+		this.emitPosLens[i] = posLen;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		this.emitCount = 0;
+		this.emitIndex = 0;
+	}
+}
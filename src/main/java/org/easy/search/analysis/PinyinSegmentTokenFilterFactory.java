@@ -0,0 +1,64 @@
+package org.easy.search.analysis;
+
+import java.util.Map;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+
+/**
+ * 连续拼音切分过滤器工厂，用于查询端，配合按音节（syllable）或图模式输出的{@link PinyinTransformTokenFilterFactory}
+ */
+public class PinyinSegmentTokenFilterFactory extends TokenFilterFactory {
+
+	/**
+	 * 最多输出的切分个数
+	 */
+	private final int maxSegmentations;
+
+	/**
+	 * 是否允许简拼首字母
+	 */
+	private final boolean initials;
+
+	/**
+	 * 输出原词元标识
+	 */
+	private final boolean isOutOriginal;
+
+	/**
+	 * 模糊音规则，未配置时为null
+	 */
+	private final PinyinFuzzyRules fuzzy;
+
+	/**
+	 * 是否以音节编码输出
+	 */
+	private final boolean binary;
+
+	/**
+	 *
+	 * @param args
+	 *            init param
+	 */
+	public PinyinSegmentTokenFilterFactory(Map<String, String> args) {
+		super(args);
+		this.maxSegmentations = getInt(args, "maxSegmentations", PinyinSegmentTokenFilter.DEFAULT_MAX_SEGMENTATIONS);
+		this.initials = getBoolean(args, "initials", true);
+		this.isOutOriginal = getBoolean(args, "outOriginal", true);
+		this.fuzzy = PinyinFuzzyRules.parse(get(args, "fuzzy"));
+		this.binary = getBoolean(args, "binary", false);
+		if (!args.isEmpty()) {
+			throw new IllegalArgumentException("Unknown parameters: " + args);
+		}
+		if (this.maxSegmentations < 1) {
+			throw new IllegalArgumentException("maxSegmentations must be greater than zero");
+		}
+	}
+
+	@Override
+	public TokenFilter create(TokenStream input) {
+		return new PinyinSegmentTokenFilter(input, this.maxSegmentations, this.initials, this.isOutOriginal,
+				this.fuzzy, this.binary);
+	}
+}
@@ -0,0 +1,41 @@
+package org.easy.search.analysis;
+
+import org.apache.lucene.util.Attribute;
+
+/**
+ * 拼音词元的音节边界，由拼音转换过滤器设置，供NGram过滤器按音节切分。
+ * <p>
+ * 边界以每个音节在词元中的结束位置表示，音节个数为0表示未知，例如原词元或其它过滤器生成的词元。
+ */
+public interface PinyinSyllableAttribute extends Attribute {
+
+	/**
+	 *
+	 * @return 音节个数，0为未知
+	 */
+	int getSyllableCount();
+
+	/**
+	 *
+	 * @param index
+	 *            音节序号
+	 * @return 该音节在词元中的结束位置
+	 */
+	int getSyllableEnd(int index);
+
+	/**
+	 * 设置音节边界
+	 *
+	 * @param ends
+	 *            每个音节的结束位置
+	 * @param count
+	 *            音节个数
+	 */
+	void setSyllableEnds(int[] ends, int count);
+
+	/**
+	 *
+	 * @return 音节结束位置缓冲区，有效长度为{@link #getSyllableCount()}
+	 */
+	int[] getSyllableEnds();
+}
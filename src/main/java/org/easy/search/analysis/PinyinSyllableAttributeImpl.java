@@ -0,0 +1,90 @@
+package org.easy.search.analysis;
+
+import java.util.Arrays;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeReflector;
+
+/**
+ * {@link PinyinSyllableAttribute}的默认实现
+ */
+public final class PinyinSyllableAttributeImpl extends AttributeImpl implements PinyinSyllableAttribute {
+
+	private int[] ends = new int[8];
+
+	private int count;
+
+	@Override
+	public int getSyllableCount() {
+		return this.count;
+	}
+
+	@Override
+	public int getSyllableEnd(int index) {
+		return this.ends[index];
+	}
+
+	@Override
+	public void setSyllableEnds(int[] ends, int count) {
+		this.ends = ArrayUtil.grow(this.ends, count);
+		System.arraycopy(ends, 0, this.ends, 0, count);
+		this.count = count;
+	}
+
+	@Override
+	public int[] getSyllableEnds() {
+		return this.ends;
+	}
+
+	@Override
+	public void clear() {
+		this.count = 0;
+	}
+
+	@Override
+	public void copyTo(AttributeImpl target) {
+		((PinyinSyllableAttribute) target).setSyllableEnds(this.ends, this.count);
+	}
+
+	@Override
+	public void reflectWith(AttributeReflector reflector) {
+		reflector.reflect(PinyinSyllableAttribute.class, "syllableEnds", Arrays.copyOf(this.ends, this.count));
+	}
+
+	@Override
+	public PinyinSyllableAttributeImpl clone() {
+		PinyinSyllableAttributeImpl clone = (PinyinSyllableAttributeImpl) super.clone();
+		clone.ends = this.ends.clone();
+		return clone;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (!(other instanceof PinyinSyllableAttributeImpl)) {
+			return false;
+		}
+		PinyinSyllableAttributeImpl o = (PinyinSyllableAttributeImpl) other;
+		if (o.count != this.count) {
+			return false;
+		}
+		for (int i = 0; i < this.count; i++) {
+			if (o.ends[i] != this.ends[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = this.count;
+		for (int i = 0; i < this.count; i++) {
+			hash = 31 * hash + this.ends[i];
+		}
+		return hash;
+	}
+}
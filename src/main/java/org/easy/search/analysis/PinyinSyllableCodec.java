@@ -0,0 +1,174 @@
+package org.easy.search.analysis;
+
+/**
+ * 拼音音节编码，将拼音词元压缩为紧凑的二进制词元。
+ * <p>
+ * 每个音节编码为9位：全拼为音节编号，简拼首字母为{@link #INITIAL_BASE}加字母序号（单字母音节如a、e的简拼与全拼相同，
+ * 取音节编号）。编码按7位一组写为0~127的字符，索引时UTF-8编码后每个字符恰为一个字节，因此词元即为压缩后的字节，
+ * 约每音节9/7字节，而全拼平均每音节三个多字节。不同音节个数的编码长度不同，编码无歧义。
+ * <p>
+ * 编码后的词元只适合精确匹配，不能再做NGram切分或前缀查询。查询端以{@link #encode(String, PinyinFuzzyRules)}
+ * 或{@link PinyinSegmentTokenFilter}的二进制输出生成相同的词元。线程安全。
+ */
+public final class PinyinSyllableCodec {
+
+	/**
+	 * 每个音节的编码位数
+	 */
+	static final int CODE_BITS = 9;
+
+	/**
+	 * 每个字符的编码位数
+	 */
+	static final int CHAR_BITS = 7;
+
+	/**
+	 * 简拼首字母编码的起始值
+	 */
+	static final int INITIAL_BASE = (1 << CODE_BITS) - 26;
+
+	/**
+	 * 每个字母的简拼编码
+	 */
+	private static final int[] INITIAL_CODES = new int[26];
+
+	static {
+		PinyinCharTable table = PinyinCharTable.getInstance();
+		if (table.getSyllableCount() > INITIAL_BASE) {
+			throw new IllegalStateException("Too many syllables to encode: " + table.getSyllableCount());
+		}
+		for (char c = 'a'; c <= 'z'; c++) {
+			int id = table.getSyllableId(String.valueOf(c));
+			INITIAL_CODES[c - 'a'] = id >= 0 ? id : INITIAL_BASE + (c - 'a');
+		}
+	}
+
+	private PinyinSyllableCodec() {
+	}
+
+	/**
+	 *
+	 * @param syllableId
+	 *            音节编号
+	 * @return 全拼编码
+	 */
+	static int fullCode(int syllableId) {
+		return syllableId;
+	}
+
+	/**
+	 *
+	 * @param initial
+	 *            简拼首字母（小写）
+	 * @return 简拼编码
+	 */
+	static int initialCode(char initial) {
+		return INITIAL_CODES[initial - 'a'];
+	}
+
+	/**
+	 *
+	 * @param count
+	 *            音节个数
+	 * @return 编码后的字符数
+	 */
+	static int encodedLength(int count) {
+		return (count * CODE_BITS + CHAR_BITS - 1) / CHAR_BITS;
+	}
+
+	/**
+	 * 编码音节
+	 *
+	 * @param codes
+	 *            音节编码
+	 * @param count
+	 *            音节个数
+	 * @param buffer
+	 *            输出缓冲区，容量不小于{@link #encodedLength(int)}
+	 * @param offset
+	 *            写入位置
+	 * @return 写入的字符数
+	 */
+	static int encode(int[] codes, int count, char[] buffer, int offset) {
+		int pos = offset;
+		int bits = 0;
+		int acc = 0;
+		for (int i = 0; i < count; i++) {
+			acc = (acc << CODE_BITS) | codes[i];
+			bits += CODE_BITS;
+			while (bits >= CHAR_BITS) {
+				bits -= CHAR_BITS;
+				buffer[pos++] = (char) ((acc >>> bits) & 0x7F);
+			}
+			acc &= (1 << bits) - 1;
+		}
+		if (bits > 0) {
+			buffer[pos++] = (char) ((acc << (CHAR_BITS - bits)) & 0x7F);
+		}
+		return pos - offset;
+	}
+
+	/**
+	 * 编码以空格分隔的拼音，用于查询端直接构造词元
+	 *
+	 * @param pinyin
+	 *            以空格分隔的全拼音节或简拼首字母，如“zhong guo ren”、“z g r”
+	 * @param fuzzy
+	 *            模糊音规则，需与索引端相同，可为null
+	 * @return 编码后的词元
+	 * @throws IllegalArgumentException
+	 *             含有不是音节的拼写
+	 */
+	public static String encode(String pinyin, PinyinFuzzyRules fuzzy) {
+		PinyinCharTable table = PinyinCharTable.getInstance();
+		String[] syllables = pinyin.trim().split("\\s+");
+		int[] codes = new int[syllables.length];
+		for (int i = 0; i < syllables.length; i++) {
+			String syllable = syllables[i].toLowerCase();
+			int id = table.getSyllableId(syllable);
+			if (id >= 0) {
+				codes[i] = fullCode(fuzzy != null ? fuzzy.canonicalId(id) : id);
+			} else if (syllable.length() == 1 && syllable.charAt(0) >= 'a' && syllable.charAt(0) <= 'z') {
+				codes[i] = initialCode(fuzzy != null ? fuzzy.initial(syllable.charAt(0)) : syllable.charAt(0));
+			} else {
+				throw new IllegalArgumentException("Not a pinyin syllable: " + syllables[i]);
+			}
+		}
+		char[] buffer = new char[encodedLength(codes.length)];
+		return new String(buffer, 0, encode(codes, codes.length, buffer, 0));
+	}
+
+	/**
+	 * 解码词元，用于调试和查看索引
+	 *
+	 * @param term
+	 *            编码后的词元
+	 * @return 以空格分隔的音节，简拼为首字母；有模糊音规则时为规范音节编号对应的音节
+	 */
+	public static String decode(CharSequence term) {
+		PinyinCharTable table = PinyinCharTable.getInstance();
+		int count = term.length() * CHAR_BITS / CODE_BITS;
+		StringBuilder sb = new StringBuilder();
+		int bits = 0;
+		int acc = 0;
+		int pos = 0;
+		for (int i = 0; i < count; i++) {
+			while (bits < CODE_BITS) {
+				acc = (acc << CHAR_BITS) | (term.charAt(pos++) & 0x7F);
+				bits += CHAR_BITS;
+			}
+			bits -= CODE_BITS;
+			int code = (acc >>> bits) & ((1 << CODE_BITS) - 1);
+			acc &= (1 << bits) - 1;
+			if (i > 0) {
+				sb.append(' ');
+			}
+			if (code >= INITIAL_BASE) {
+				sb.append((char) ('a' + code - INITIAL_BASE));
+			} else {
+				sb.append(table.getSyllableString(code));
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,180 @@
+package org.easy.search.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 拼音音节前缀树，用于切分连续输入的拼音。
+ * <p>
+ * 由{@link PinyinCharTable}的全部音节编译为数组形式的前缀树，查找时只做数组访问。音节中的ü（pinyin4j拼写为u:）
+ * 同时以输入习惯的v和ü收录，匹配结果仍为原音节编号。输入不区分大小写。线程安全，全局共享一个实例。
+ */
+final class PinyinSyllableTrie {
+
+	/**
+	 * 字符在前缀树字母表中的序号，不在字母表中的字符为-1
+	 */
+	private final int[] charIndex = new int[256];
+
+	/**
+	 * 字母表大小
+	 */
+	private final int alphabetSize;
+
+	/**
+	 * 子节点，下标为节点编号乘以字母表大小加字符序号，0为无子节点（根节点不会是子节点）
+	 */
+	private final int[] children;
+
+	/**
+	 * 节点对应的音节编号，非音节结尾为-1
+	 */
+	private final int[] syllableIds;
+
+	/**
+	 * 以该字符开头的音节是否存在，即该字符能否作为简拼首字母
+	 */
+	private final boolean[] initials = new boolean[256];
+
+	/**
+	 * 最长的音节拼写长度
+	 */
+	private final int maxSyllableLength;
+
+	private PinyinSyllableTrie(PinyinCharTable table) {
+		List<char[]> spellings = new ArrayList<char[]>();
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int id = 0; id < table.getSyllableCount(); id++) {
+			String syllable = table.getSyllableString(id);
+			addSpelling(spellings, ids, syllable, id);
+			if (syllable.contains("u:")) {
+				addSpelling(spellings, ids, syllable.replace("u:", "v"), id);
+				addSpelling(spellings, ids, syllable.replace("u:", "ü"), id);
+			}
+			this.initials[syllable.charAt(0)] = true;
+		}
+
+		Arrays.fill(this.charIndex, -1);
+		int size = 0;
+		int nodes = 1;
+		int maxLength = 0;
+		for (char[] spelling : spellings) {
+			for (char c : spelling) {
+				if (this.charIndex[c] < 0) {
+					this.charIndex[c] = size++;
+				}
+			}
+			nodes += spelling.length;
+			maxLength = Math.max(maxLength, spelling.length);
+		}
+		this.alphabetSize = size;
+		this.maxSyllableLength = maxLength;
+
+		// 节点数以全部拼写长度之和为上限，构建后截断
+		int[] children = new int[nodes * size];
+		int[] syllableIds = new int[nodes];
+		Arrays.fill(syllableIds, -1);
+		int count = 1;
+		for (int i = 0; i < spellings.size(); i++) {
+			int node = 0;
+			for (char c : spellings.get(i)) {
+				int slot = node * size + this.charIndex[c];
+				if (children[slot] == 0) {
+					children[slot] = count++;
+				}
+				node = children[slot];
+			}
+			syllableIds[node] = ids.get(i);
+		}
+		this.children = Arrays.copyOf(children, count * size);
+		this.syllableIds = Arrays.copyOf(syllableIds, count);
+	}
+
+	private static void addSpelling(List<char[]> spellings, List<Integer> ids, String spelling, int id) {
+		spellings.add(spelling.toCharArray());
+		ids.add(id);
+	}
+
+	/**
+	 *
+	 * @return 全局共享的前缀树，首次调用时构建
+	 */
+	static PinyinSyllableTrie getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 *
+	 * @return 最长的音节拼写长度，即{@link #match}的最大匹配个数
+	 */
+	int getMaxSyllableLength() {
+		return this.maxSyllableLength;
+	}
+
+	/**
+	 * 查找从offset开始的全部音节
+	 *
+	 * @param buffer
+	 *            输入
+	 * @param offset
+	 *            起始位置
+	 * @param length
+	 *            可匹配的最大长度
+	 * @param ends
+	 *            每个匹配音节相对offset的结束位置，按长度递增，容量不小于{@link #getMaxSyllableLength()}
+	 * @param ids
+	 *            每个匹配音节的编号，容量不小于{@link #getMaxSyllableLength()}
+	 * @return 匹配的音节个数
+	 */
+	int match(char[] buffer, int offset, int length, int[] ends, int[] ids) {
+		int count = 0;
+		int node = 0;
+		for (int i = 0; i < length; i++) {
+			int index = indexOf(buffer[offset + i]);
+			if (index < 0) {
+				break;
+			}
+			node = this.children[node * this.alphabetSize + index];
+			if (node == 0) {
+				break;
+			}
+			if (this.syllableIds[node] >= 0) {
+				ends[count] = i + 1;
+				ids[count] = this.syllableIds[node];
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            输入字符
+	 * @return 该字符能否作为简拼首字母
+	 */
+	boolean isInitial(char c) {
+		c = Character.toLowerCase(c);
+		return c < this.initials.length && this.initials[c];
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            输入字符
+	 * @return 该字符是否在音节字母表中
+	 */
+	boolean isSyllableChar(char c) {
+		return indexOf(c) >= 0;
+	}
+
+	private int indexOf(char c) {
+		c = Character.toLowerCase(c);
+		return c < this.charIndex.length ? this.charIndex[c] : -1;
+	}
+
+	private static final class Holder {
+		private static final PinyinSyllableTrie INSTANCE = new PinyinSyllableTrie(PinyinCharTable.getInstance());
+	}
+}
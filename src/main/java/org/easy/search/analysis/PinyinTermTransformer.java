@@ -0,0 +1,552 @@
+package org.easy.search.analysis;
+
+import java.util.Arrays;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.easy.search.analysis.PinyinTransformTokenFilter.OutputFormat;
+
+/**
+ * 单个词元的拼音转换，供拼音转换过滤器及拼音转换NGram过滤器共用。
+ * <p>
+ * {@link #transform(char[], int)}之后反复调用{@link #next()}逐个生成拼音，当前拼音可写入词元或通过
+ * {@link #buffer()}、{@link #offset()}、{@link #length()}直接读取。启用缓存时，命中的词元直接读取缓存结果，
+ * 未命中的词元在全部拼音生成后加入缓存。
+ * <p>
+ * 图模式下不枚举拼音组合，{@link #next()}依次生成每个汉字位置上的各个读音（全拼及简拼首字母），
+ * 当前读音所在的位置由{@link #position()}给出，不使用缓存。
+ * <p>
+ * 二进制模式下拼音以{@link PinyinSyllableCodec}编码输出，不提供音节边界。非线程安全，每个过滤器一个实例。
+ */
+final class PinyinTermTransformer {
+
+	/**
+	 * 输出格式
+	 */
+	private final OutputFormat outputFormat;
+
+	/**
+	 * 转换拼音的最小中文词组长度
+	 */
+	private final int minTermLength;
+
+	/**
+	 * 简拼全拼混合时，简拼长度
+	 */
+	private final int mixShortLength;
+
+	/**
+	 * 生成混合拼音的最少中文字数
+	 */
+	private final int minMixLength;
+
+	/**
+	 * 词语拼音词典，可为null
+	 */
+	private final PinyinWordDictionary dictionary;
+
+	/**
+	 * 可重新加载的词典，每个词元取一次快照，不可重新加载时为null
+	 */
+	private final ReloadablePinyinWordDictionary reloadable;
+
+	/**
+	 * 当前词元使用的词典快照
+	 */
+	private PinyinWordDictionary termDictionary;
+
+	/**
+	 * 转换结果缓存，可为null
+	 */
+	private final PinyinExpansionCache cache;
+
+	/**
+	 * 运行指标的本地计数，可为null
+	 */
+	private final PinyinFilterMetrics.Recorder recorder;
+
+	/**
+	 * 拼音组合
+	 */
+	private final PinyinVariants variants;
+
+	/**
+	 * 是否为图模式
+	 */
+	private final boolean graph;
+
+	/**
+	 * 是否以{@link PinyinSyllableCodec}编码输出
+	 */
+	private final boolean binary;
+
+	/**
+	 * 图模式下当前读音所在的汉字位置
+	 */
+	private int arcPosition;
+
+	/**
+	 * 图模式下当前读音在该位置中的序号，全拼在前、简拼在后
+	 */
+	private int arcIndex;
+
+	/**
+	 * 词典匹配的读音缓存
+	 */
+	private int[] wordIds = new int[8];
+
+	/**
+	 * 二进制图模式下当前读音的编码
+	 */
+	private final int[] arcCode = new int[1];
+
+	/**
+	 * 当前词元，由调用方持有，在下一次transform之前不能修改
+	 */
+	private char[] term;
+
+	private int termLength;
+
+	/**
+	 * 当前词元命中的缓存结果
+	 */
+	private PinyinExpansionCache.Expansion cached;
+
+	/**
+	 * 缓存结果中当前拼音的序号
+	 */
+	private int cachedIndex;
+
+	/**
+	 * 是否记录当前词元的拼音以加入缓存
+	 */
+	private boolean recording;
+
+	/**
+	 * 已记录的拼音，依次连接，记录时当前拼音直接生成在此
+	 */
+	private char[] recordChars = new char[64];
+
+	/**
+	 * 已记录的每个拼音的结束位置
+	 */
+	private int[] recordEnds = new int[8];
+
+	/**
+	 * 已记录的拼音个数
+	 */
+	private int recordCount;
+
+	/**
+	 * 已记录的每个拼音的音节结束位置
+	 */
+	private int[] recordSyllableEnds = new int[16];
+
+	/**
+	 * 当前词元每个拼音的音节个数
+	 */
+	private int syllableCount;
+
+	/**
+	 * 未记录时当前拼音的生成缓冲区
+	 */
+	private char[] scratch = new char[32];
+
+	/**
+	 * 当前拼音是否已生成到缓冲区
+	 */
+	private boolean materialized;
+
+	/**
+	 * 当前拼音在缓冲区中的位置和长度
+	 */
+	private int currentOffset;
+
+	private int currentLength;
+
+	/**
+	 *
+	 * @param options
+	 *            转换配置，构造时读取，图模式下忽略mixShortLength、maxVariants及缓存
+	 * @param recorder
+	 *            运行指标记录，可为null
+	 */
+	PinyinTermTransformer(PinyinTransformOptions options, PinyinFilterMetrics.Recorder recorder) {
+		this.binary = options.isBinary();
+		this.minMixLength = options.getMinMixLength();
+		this.graph = options.isGraph();
+		this.outputFormat = options.getOutputFormat();
+		this.minTermLength = Math.max(options.getMinTermLength(), 1);
+		this.mixShortLength = options.getMixShortLength();
+		this.variants = new PinyinVariants(PinyinCharTable.getInstance(), Math.max(options.getMaxReadings(), 0),
+				Math.max(options.getMaxVariants(), 0), options.getFuzzy());
+		this.dictionary = options.getDictionary();
+		this.reloadable = this.dictionary instanceof ReloadablePinyinWordDictionary
+				? (ReloadablePinyinWordDictionary) this.dictionary : null;
+		this.cache = this.graph ? null : options.getCache();
+		this.recorder = recorder;
+	}
+
+	/**
+	 * 转换词元
+	 *
+	 * @param term
+	 *            词元，在全部拼音生成之前不能修改
+	 * @param length
+	 *            词元长度
+	 * @return 拼音词元类型，中文字数不足或没有可转换的读音时返回null
+	 */
+	String transform(char[] term, int length) {
+		reset();
+		this.term = term;
+		this.termLength = length;
+
+		int chineseCount = PinyinTransformTokenFilter.countChineseChar(term, 0, length);
+
+		// 判断是否符合处理长度
+		if (chineseCount < this.minTermLength) {
+			return null;
+		}
+
+		String type;
+		switch (this.outputFormat) {
+		case SHORT:
+			type = "short_pinyin";
+			break;
+		case FULL:
+			type = "full_pinyin";
+			break;
+		case SYLLABLE:
+			type = "syllable_pinyin";
+			break;
+		default:
+			type = "both_pinyin";
+			break;
+		}
+
+		// 同一词元的转换只使用一个词典快照，词典重新加载前生成的缓存结果不再使用
+		PinyinWordDictionary dictionary = this.reloadable != null ? this.reloadable.get() : this.dictionary;
+		this.termDictionary = dictionary;
+		if (this.cache != null) {
+			this.cached = this.cache.get(term, 0, length, dictionary);
+			if (this.cached != null) {
+				this.syllableCount = this.cached.syllableCount;
+				return type;
+			}
+			this.recording = true;
+		}
+
+		// 获取拼音结果，词典中的词语使用词典读音
+		boolean timed = dictionary != null && this.recorder != null;
+		long lookupStart = timed ? System.nanoTime() : 0;
+		for (int i = 0; i < length;) {
+			if (dictionary != null) {
+				this.wordIds = ArrayUtil.grow(this.wordIds, length - i);
+				int matched = dictionary.match(term, i, length - i, this.wordIds);
+				if (matched > 0) {
+					int count = Character.codePointCount(term, i, matched);
+					for (int j = 0; j < count; j++) {
+						this.variants.addSyllable(this.wordIds[j]);
+					}
+					i += matched;
+					continue;
+				}
+			}
+			int codePoint = Character.codePointAt(term, i, length);
+			this.variants.addChar(codePoint);
+			i += Character.charCount(codePoint);
+		}
+		if (timed) {
+			this.recorder.dictionaryLookup(System.nanoTime() - lookupStart);
+		}
+		int size = this.variants.size();
+		if (size == 0) {
+			// 中文字符都没有读音
+			reset();
+			return null;
+		}
+		this.syllableCount = size;
+		if (this.graph) {
+			return type;
+		}
+
+		switch (this.outputFormat) {
+		case SHORT:// 简拼
+			this.variants.addVariants(size, size);
+			break;
+		case FULL:// 全拼
+			this.variants.addVariants(0, 0);
+			break;
+		default:// 简拼和全拼
+			this.variants.addVariants(size, size);
+			this.variants.addVariants(0, 0);
+			break;
+		}
+
+		if (this.mixShortLength > 0 && chineseCount >= this.minMixLength) {
+			// 最大长度为拼音长度-1，最后一个首字母始终链接，因此最后一个进行首字母没有意义
+			int shortLength = Math.min(Math.min(this.mixShortLength, size - 1), 10);
+			this.variants.addVariants(1, shortLength);
+		}
+		return type;
+	}
+
+	/**
+	 * 在有简拼的情况下中文长度应最小为3，在无简拼的情况下中文长度应最小为2
+	 *
+	 * @return 该输出格式下生成混合拼音的最少中文字数
+	 */
+	static int defaultMinMixLength(OutputFormat outputFormat) {
+		return outputFormat == OutputFormat.FULL ? 2 : 3;
+	}
+
+	/**
+	 * 生成下一个拼音，全部生成后将结果加入缓存
+	 *
+	 * @return 没有更多拼音时返回false
+	 */
+	boolean next() {
+		if (this.graph) {
+			return nextArc();
+		}
+		if (this.cached != null) {
+			if (this.cachedIndex >= this.cached.ends.length) {
+				return false;
+			}
+			this.currentOffset = this.cachedIndex == 0 ? 0 : this.cached.ends[this.cachedIndex - 1];
+			this.currentLength = this.cached.ends[this.cachedIndex] - this.currentOffset;
+			this.cachedIndex++;
+			return true;
+		}
+		if (!this.variants.next()) {
+			if (this.recording) {
+				// 全部拼音已生成，加入缓存
+				this.recording = false;
+				int length = this.recordCount == 0 ? 0 : this.recordEnds[this.recordCount - 1];
+				this.cache.put(this.term, 0, this.termLength,
+						new PinyinExpansionCache.Expansion(Arrays.copyOf(this.recordChars, length),
+								Arrays.copyOf(this.recordEnds, this.recordCount), this.syllableCount,
+								Arrays.copyOf(this.recordSyllableEnds, this.recordCount * this.syllableCount),
+								this.variants.isTruncated(), this.termDictionary));
+			}
+			return false;
+		}
+		this.materialized = false;
+		if (this.recording) {
+			record();
+		}
+		return true;
+	}
+
+	/**
+	 * 图模式下生成下一个读音，同一位置上与全拼相同的简拼不再生成
+	 *
+	 * @return 没有更多读音时返回false
+	 */
+	private boolean nextArc() {
+		while (this.arcPosition < this.variants.size()) {
+			int fullCount = this.outputFormat != OutputFormat.SHORT ? this.variants.fullCount(this.arcPosition) : 0;
+			int shortCount = this.outputFormat == OutputFormat.SHORT || this.outputFormat == OutputFormat.BOTH
+					? this.variants.shortCount(this.arcPosition) : 0;
+			int index = ++this.arcIndex;
+			if (this.binary && index < fullCount + shortCount) {
+				if (index >= fullCount && fullCount > 0
+						&& this.variants.isShortFull(this.arcPosition, index - fullCount)) {
+					continue;
+				}
+				this.arcCode[0] = index < fullCount ? this.variants.fullCode(this.arcPosition, index)
+						: this.variants.shortCode(this.arcPosition, index - fullCount);
+				this.currentLength = PinyinSyllableCodec.encode(this.arcCode, 1, this.scratch, 0);
+			} else if (index < fullCount) {
+				char[] syllable = this.variants.fullSyllable(this.arcPosition, index);
+				this.scratch = ArrayUtil.grow(this.scratch, syllable.length);
+				System.arraycopy(syllable, 0, this.scratch, 0, syllable.length);
+				this.currentLength = syllable.length;
+			} else if (index < fullCount + shortCount) {
+				if (fullCount > 0 && this.variants.isShortFull(this.arcPosition, index - fullCount)) {
+					continue;
+				}
+				this.scratch[0] = this.variants.shortInitial(this.arcPosition, index - fullCount);
+				this.currentLength = 1;
+			} else {
+				this.arcPosition++;
+				this.arcIndex = -1;
+				continue;
+			}
+			this.currentOffset = 0;
+			this.materialized = true;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @return 图模式下当前读音所在的汉字位置，否则为0
+	 */
+	int position() {
+		return this.graph ? this.arcPosition : 0;
+	}
+
+	/**
+	 * 将当前拼音生成在记录缓冲区中，超过可缓存长度时放弃缓存
+	 */
+	private void record() {
+		int start = this.recordCount == 0 ? 0 : this.recordEnds[this.recordCount - 1];
+		int length = variantLength();
+		int end = start + length;
+		if (end > PinyinExpansionCache.MAX_CACHED_CHARS) {
+			this.recording = false;
+			return;
+		}
+		this.recordChars = ArrayUtil.grow(this.recordChars, end);
+		writeVariant(this.recordChars, start);
+		this.recordEnds = ArrayUtil.grow(this.recordEnds, this.recordCount + 1);
+		this.recordSyllableEnds = ArrayUtil.grow(this.recordSyllableEnds,
+				(this.recordCount + 1) * this.syllableCount);
+		this.variants.syllableEnds(this.recordSyllableEnds, this.recordCount * this.syllableCount);
+		this.recordEnds[this.recordCount++] = end;
+		this.currentOffset = start;
+		this.currentLength = length;
+		this.materialized = true;
+	}
+
+	/**
+	 * 将当前拼音写入词元
+	 *
+	 * @param termAtt
+	 *            词元属性
+	 */
+	void write(CharTermAttribute termAtt) {
+		if (this.cached == null && !this.materialized && !this.binary) {
+			this.variants.write(termAtt);
+		} else {
+			termAtt.copyBuffer(buffer(), this.currentOffset, this.currentLength);
+		}
+	}
+
+	/**
+	 *
+	 * @return 当前拼音所在的缓冲区
+	 */
+	char[] buffer() {
+		if (this.cached != null) {
+			return this.cached.chars;
+		}
+		if (this.recording) {
+			return this.recordChars;
+		}
+		if (!this.materialized) {
+			this.currentLength = variantLength();
+			this.scratch = ArrayUtil.grow(this.scratch, this.currentLength);
+			writeVariant(this.scratch, 0);
+			this.currentOffset = 0;
+			this.materialized = true;
+		}
+		return this.scratch;
+	}
+
+	/**
+	 *
+	 * @return 当前拼音组合生成后的字符数
+	 */
+	private int variantLength() {
+		return this.binary ? this.variants.encodedLength() : this.variants.length();
+	}
+
+	/**
+	 * 将当前拼音组合生成到缓冲区
+	 */
+	private void writeVariant(char[] buffer, int offset) {
+		if (this.binary) {
+			this.variants.writeEncoded(buffer, offset);
+		} else {
+			this.variants.write(buffer, offset);
+		}
+	}
+
+	/**
+	 *
+	 * @return 当前拼音在{@link #buffer()}中的起始位置
+	 */
+	int offset() {
+		buffer();
+		return this.currentOffset;
+	}
+
+	/**
+	 *
+	 * @return 当前拼音的长度
+	 */
+	int length() {
+		buffer();
+		return this.currentLength;
+	}
+
+	/**
+	 *
+	 * @return 当前词元每个拼音的音节个数
+	 */
+	int syllableCount() {
+		return this.syllableCount;
+	}
+
+	/**
+	 * 当前拼音中每个音节的结束位置
+	 *
+	 * @param ends
+	 *            结束位置，容量不小于{@link #syllableCount()}
+	 * @return 音节个数，二进制模式下为0
+	 */
+	int syllableEnds(int[] ends) {
+		if (this.binary) {
+			return 0;
+		}
+		if (this.graph) {
+			// 图模式下每个读音为一个音节
+			ends[0] = this.currentLength;
+			return 1;
+		}
+		if (this.cached != null) {
+			System.arraycopy(this.cached.syllableEnds, (this.cachedIndex - 1) * this.syllableCount, ends, 0,
+					this.syllableCount);
+			return this.syllableCount;
+		}
+		return this.variants.syllableEnds(ends, 0);
+	}
+
+	/**
+	 * 非图模式且未使用缓存时，当前拼音的简拼长度
+	 *
+	 * @return 0为全拼，等于{@link #syllableCount()}为简拼，介于两者之间为混合拼音
+	 */
+	int shortLength() {
+		return this.variants.shortLength();
+	}
+
+	/**
+	 *
+	 * @return 读音或组合是否因数量限制被截断
+	 */
+	boolean isTruncated() {
+		return this.cached != null ? this.cached.truncated : this.variants.isTruncated();
+	}
+
+	/**
+	 * 清除当前词元
+	 */
+	void reset() {
+		this.variants.reset();
+		this.term = null;
+		this.termLength = 0;
+		this.termDictionary = null;
+		this.cached = null;
+		this.cachedIndex = 0;
+		this.recording = false;
+		this.recordCount = 0;
+		this.syllableCount = 0;
+		this.materialized = false;
+		this.arcPosition = 0;
+		this.arcIndex = -1;
+	}
+}
@@ -0,0 +1,257 @@
+package org.easy.search.analysis;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.easy.search.analysis.PinyinNGramTokenFilter.GramUnit;
+import org.easy.search.analysis.PinyinNGramTokenFilter.OutputDirection;
+import org.easy.search.analysis.PinyinTransformTokenFilter.OutputFormat;
+
+/**
+ * 拼音转换与NGram切分合并的过滤器，输出与{@link PinyinTransformTokenFilter}后接{@link PinyinNGramTokenFilter}相同。
+ * <p>
+ * 每个拼音直接从转换结果（拼音组合或缓存）中切分，不再先写入词元、再由NGram过滤器复制一次。
+ */
+public final class PinyinTransformNGramTokenFilter extends TokenFilter {
+
+	/**
+	 * 原词元输出标识
+	 */
+	private final boolean isOutOriginalTerm;
+
+	/**
+	 * 词元拼音转换
+	 */
+	private final PinyinTermTransformer transformer;
+
+	/**
+	 * 拼音切分
+	 */
+	private final PinyinEdgeGrams grams;
+
+	/**
+	 * 运行指标的本地计数，可为null
+	 */
+	private final PinyinFilterMetrics.Recorder recorder;
+
+	/**
+	 * 当前处理词元（即原词元）
+	 */
+	private char[] curTermBuffer = new char[16];
+
+	private int curTermLength;
+
+	private boolean hasCurTerm = false;
+
+	/**
+	 * 当前词元的原词元是否已切分
+	 */
+	private boolean hasCurOut = false;
+
+	/**
+	 * 当前词元是否已转换拼音
+	 */
+	private boolean hasTransformed = false;
+
+	/**
+	 * 正在切分的原词元或拼音
+	 */
+	private char[] sourceBuffer;
+
+	private int sourceOffset;
+
+	private boolean hasSource = false;
+
+	/**
+	 * 当前拼音的音节结束位置
+	 */
+	private int[] syllableEnds = new int[8];
+
+	/**
+	 * 当前词元中是否有超过最大切分长度的原词元或拼音
+	 */
+	private boolean capped;
+
+	/**
+	 * 等同于串联时的位置增量属性值：原词元和拼音沿用上一个切分的位置增量
+	 */
+	private int tokenPosIncr;
+
+	private int savePosIncr;
+
+	private int savePosLen;
+
+	/**
+	 * 当前词元已输出的词元数
+	 */
+	private int termEmitted;
+
+	private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+	private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+	private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+	private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
+	private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+
+	/**
+	 * 构造器
+	 *
+	 * @param input
+	 *            词元
+	 * @param options
+	 *            转换配置，构造时读取，不支持按音节、词元图及编码输出，见{@link PinyinTransformOptions}
+	 * @param minGram
+	 *            最小切分长度
+	 * @param maxGram
+	 *            最大切分长度
+	 * @param direction
+	 *            输出方向
+	 * @param gramUnit
+	 *            切分单位，按字符或按音节，按音节时minGram、maxGram以音节计
+	 * @param partialSyllable
+	 *            按音节切分时，是否输出末尾不完整的音节
+	 */
+	public PinyinTransformNGramTokenFilter(TokenStream input, PinyinTransformOptions options, int minGram,
+			int maxGram, OutputDirection direction, GramUnit gramUnit, boolean partialSyllable) {
+		super(input);
+
+		if (minGram < 1) {
+			throw new IllegalArgumentException("minGram must be greater than zero");
+		}
+
+		if (minGram > maxGram) {
+			throw new IllegalArgumentException("minGram must not be greater than maxGram");
+		}
+
+		if (options.getOutputFormat() == OutputFormat.SYLLABLE) {
+			// 按音节输出时各音节位置不同，无法与NGram切分合并
+			throw new IllegalArgumentException(
+					"outputFormat syllable is not supported, use PinyinTransformTokenFilter");
+		}
+
+		if (options.isGraph() || options.isBinary()) {
+			// 词元图各读音位置不同，编码后的拼音不能切分
+			throw new IllegalArgumentException(
+					"graph and binary output are not supported, use PinyinTransformTokenFilter");
+		}
+
+		this.isOutOriginalTerm = options.isOutOriginal();
+		this.recorder = options.getMetrics() == null ? null : new PinyinFilterMetrics.Recorder(options.getMetrics());
+		this.transformer = new PinyinTermTransformer(options, this.recorder);
+		this.grams = new PinyinEdgeGrams(minGram, maxGram, direction, gramUnit == GramUnit.SYLLABLE,
+				partialSyllable);
+	}
+
+	@Override
+	public boolean incrementToken() throws IOException {
+		while (true) {
+			if (!this.hasCurTerm) {
+				if (!this.input.incrementToken()) {
+					return false;
+				}
+				this.curTermLength = this.termAtt.length();
+				this.curTermBuffer = ArrayUtil.grow(this.curTermBuffer, this.curTermLength);
+				System.arraycopy(this.termAtt.buffer(), 0, this.curTermBuffer, 0, this.curTermLength);
+				this.tokenPosIncr = this.posIncrAtt.getPositionIncrement();
+				this.savePosLen = this.posLenAtt.getPositionLength();
+				this.hasCurTerm = true;
+			}
+
+			// 切分当前原词元或拼音
+			if (this.hasSource) {
+				if (this.grams.next()) {
+					clearAttributes();
+					// first ngram gets increment, others don't
+					this.posIncrAtt.setPositionIncrement(this.savePosIncr);
+					this.tokenPosIncr = this.savePosIncr;
+					this.savePosIncr = 0;
+					this.posLenAtt.setPositionLength(this.savePosLen);
+					this.offsetAtt.setOffset(this.grams.start(), this.grams.end());
+					this.termAtt.copyBuffer(this.sourceBuffer, this.sourceOffset + this.grams.start(),
+							this.grams.end() - this.grams.start());
+					this.typeAtt.setType("NGram");
+					this.termEmitted++;
+					return true;
+				}
+				this.hasSource = false;
+			}
+
+			// 原词元
+			if (this.isOutOriginalTerm && !this.hasCurOut && !this.hasTransformed) {
+				this.hasCurOut = true;
+				startSource(this.curTermBuffer, 0, this.curTermLength, 0);
+				continue;
+			}
+			if (!this.hasTransformed) {
+				this.hasTransformed = true;
+				this.transformer.transform(this.curTermBuffer, this.curTermLength);
+			}
+			// 下一个拼音
+			if (this.transformer.next()) {
+				int syllableCount = 0;
+				if (this.grams.isSyllableUnit()) {
+					this.syllableEnds = ArrayUtil.grow(this.syllableEnds, this.transformer.syllableCount());
+					syllableCount = this.transformer.syllableEnds(this.syllableEnds);
+				}
+				startSource(this.transformer.buffer(), this.transformer.offset(), this.transformer.length(),
+						syllableCount);
+				continue;
+			}
+
+			if (this.recorder != null) {
+				this.recorder.term(this.termEmitted, this.capped || this.transformer.isTruncated());
+			}
+			this.termEmitted = 0;
+			this.capped = false;
+			this.hasCurTerm = false;
+			this.hasTransformed = false;
+			this.hasCurOut = false;
+		}
+	}
+
+	/**
+	 * 开始切分原词元或拼音
+	 *
+	 * @param syllableCount
+	 *            拼音的音节个数，原词元为0
+	 */
+	private void startSource(char[] buffer, int offset, int length, int syllableCount) {
+		this.sourceBuffer = buffer;
+		this.sourceOffset = offset;
+		this.grams.reset(buffer, offset, length, this.syllableEnds, syllableCount);
+		this.capped |= this.grams.isCapped();
+		this.savePosIncr += this.tokenPosIncr;
+		this.hasSource = true;
+	}
+
+	@Override
+	public void end() throws IOException {
+		super.end();
+		if (this.recorder != null) {
+			this.recorder.flush();
+		}
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		if (this.recorder != null) {
+			this.recorder.flush();
+		}
+		this.transformer.reset();
+		this.termEmitted = 0;
+		this.capped = false;
+		this.hasCurTerm = false;
+		this.hasTransformed = false;
+		this.hasCurOut = false;
+		this.hasSource = false;
+		this.sourceBuffer = null;
+		this.savePosIncr = 0;
+	}
+}
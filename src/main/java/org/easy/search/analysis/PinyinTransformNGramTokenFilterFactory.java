@@ -0,0 +1,148 @@
+package org.easy.search.analysis;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.easy.search.analysis.PinyinNGramTokenFilter.GramUnit;
+import org.easy.search.analysis.PinyinNGramTokenFilter.OutputDirection;
+import org.easy.search.analysis.PinyinTransformTokenFilter.OutputFormat;
+
+/**
+ * 拼音转换与NGram切分合并的过滤器工厂，参数为{@link PinyinTransformTokenFilterFactory}与
+ * {@link PinyinNGramTokenFilterFactory}的参数之和，输出与两者串联相同
+ */
+public class PinyinTransformNGramTokenFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
+
+	/**
+	 * 转换配置，词典在inform时设置
+	 */
+	private final PinyinTransformOptions options;
+
+	private final String dictFiles;
+
+	private final String dictFormat;
+
+	private final String warmup;
+
+	private final int dictReloadInterval;
+
+	private ReloadablePinyinWordDictionary dictionary;
+
+	private final PinyinExpansionCache cache;
+
+	private final int minGramSize;
+
+	private final int maxGramSize;
+
+	private final OutputDirection outputDirection;
+
+	private final GramUnit gramUnit;
+
+	private final boolean partialSyllable;
+
+	/**
+	 * 运行指标
+	 */
+	private final PinyinFilterMetrics metrics = new PinyinFilterMetrics("PinyinTransformNGramTokenFilter");
+
+	/**
+	 * 运行指标的JMX名称，未配置时为null
+	 */
+	private final String metricsName;
+
+	/**
+	 *
+	 * @param args
+	 *            init param
+	 */
+	public PinyinTransformNGramTokenFilterFactory(Map<String, String> args) {
+		super(args);
+		this.options = new PinyinTransformOptions()
+				.setOutOriginal(getBoolean(args, "outOriginal", PinyinTransformTokenFilter.DEFAULT_IS_OUT_ORIGINAL))
+				.setOutputFormat(OutputFormat.getOutFormat(
+						get(args, "outputFormat", PinyinTransformTokenFilter.DEFAULT_OUTPUT_FORMAT.getLabel())))
+				.setMinTermLength(getInt(args, "minTerm", PinyinTransformTokenFilter.DEFAULT_MIN_TERM_LENGTH))
+				.setMixShortLength(getInt(args, "mixShort", PinyinTransformTokenFilter.DEFAULT_MIX_SHORT_LENGTH))
+				.setMaxVariants(getInt(args, "maxVariants", PinyinTransformTokenFilter.DEFAULT_MAX_VARIANTS))
+				.setMaxReadings(getInt(args, "maxReadings", PinyinTransformTokenFilter.DEFAULT_MAX_READINGS));
+		this.dictFiles = get(args, "dict");
+		this.dictFormat = get(args, "dictFormat", Arrays.asList(PinyinTransformTokenFilterFactory.DICT_FORMAT_TEXT,
+				PinyinTransformTokenFilterFactory.DICT_FORMAT_FST), PinyinTransformTokenFilterFactory.DICT_FORMAT_TEXT);
+		this.dictReloadInterval = getInt(args, "dictReloadInterval", 0);
+		this.warmup = get(args, "warmup",
+				Arrays.asList(PinyinTransformTokenFilterFactory.WARMUP_ASYNC, PinyinTransformTokenFilterFactory.WARMUP_SYNC,
+						PinyinTransformTokenFilterFactory.WARMUP_NONE),
+				PinyinTransformTokenFilterFactory.WARMUP_ASYNC);
+		int cacheSize = getInt(args, "cacheSize", 0);
+		this.cache = cacheSize > 0 ? new PinyinExpansionCache(cacheSize) : null;
+		this.options.setCache(this.cache).setMetrics(this.metrics);
+		this.metrics.setCache(this.cache);
+		this.minGramSize = getInt(args, "minGram", PinyinNGramTokenFilter.DEFAULT_MIN_GRAM_SIZE);
+		this.maxGramSize = getInt(args, "maxGram", PinyinNGramTokenFilter.DEFAULT_MAX_GRAM_SIZE);
+		this.outputDirection = OutputDirection.getOutputDirection(
+				get(args, "outputDirection", PinyinNGramTokenFilter.DEFAULT_OUTPUT_DIRECTION.getLabel()));
+		this.gramUnit = GramUnit.getGramUnit(get(args, "gramUnit",
+				Arrays.asList(GramUnit.CHAR.getLabel(), GramUnit.SYLLABLE.getLabel()),
+				PinyinNGramTokenFilter.DEFAULT_GRAM_UNIT.getLabel()));
+		this.partialSyllable = getBoolean(args, "partialSyllable", false);
+		this.options.setFuzzy(PinyinFuzzyRules.parse(get(args, "fuzzy")));
+		this.metricsName = get(args, "metricsName");
+		if (!args.isEmpty()) {
+			throw new IllegalArgumentException("Unknown parameters: " + args);
+		}
+		if (this.options.getOutputFormat() == OutputFormat.SYLLABLE) {
+			throw new IllegalArgumentException(
+					"outputFormat syllable is not supported, use PinyinTransformTokenFilterFactory");
+		}
+	}
+
+	@Override
+	public void inform(ResourceLoader loader) throws IOException {
+		PinyinTransformTokenFilterFactory.warmUp(this.warmup);
+		this.dictionary = PinyinTransformTokenFilterFactory.loadReloadableDictionary(loader, this.dictFiles,
+				this.dictFormat, this.cache, this.dictReloadInterval);
+		this.options.setDictionary(this.dictionary);
+		if (this.metricsName != null) {
+			this.metrics.register(this.metricsName, loader);
+		}
+	}
+
+	/**
+	 * 重新加载词语拼音词典，见{@link PinyinTransformTokenFilterFactory#reloadDictionary()}
+	 *
+	 * @return 未配置词典时返回false
+	 * @throws IOException
+	 *             读取失败或格式错误，此时继续使用原词典
+	 */
+	public boolean reloadDictionary() throws IOException {
+		return this.dictionary != null && this.dictionary.reload(true);
+	}
+
+	@Override
+	public TokenFilter create(TokenStream input) {
+		return new PinyinTransformNGramTokenFilter(input, this.options, this.minGramSize, this.maxGramSize,
+				this.outputDirection, this.gramUnit, this.partialSyllable);
+	}
+
+	/**
+	 *
+	 * @return 转换结果缓存，未启用时返回null
+	 */
+	public PinyinExpansionCache getCache() {
+		return this.cache;
+	}
+
+	/**
+	 *
+	 * @return 运行指标，在词元流end()或reset()后更新
+	 */
+	public PinyinFilterMetrics getMetrics() {
+		return this.metrics;
+	}
+}
@@ -0,0 +1,249 @@
+package org.easy.search.analysis;
+
+import org.easy.search.analysis.PinyinTransformTokenFilter.OutputFormat;
+
+/**
+ * 拼音转换配置，由{@link PinyinTransformTokenFilter}、{@link PinyinTransformNGramTokenFilter}、
+ * {@link PinyinBatchConverter}及{@link PinyinUpdateProcessorFactory}共用，未设置的项取
+ * {@link PinyinTransformTokenFilter}的默认值。
+ * <p>
+ * 设置方法返回自身以便连续调用。使用者在构造时读取配置，之后修改配置不影响已创建的实例，因此一个配置可用于创建多个实例，
+ * 但不应在创建实例的同时修改。
+ */
+public final class PinyinTransformOptions {
+
+	private OutputFormat outputFormat = PinyinTransformTokenFilter.DEFAULT_OUTPUT_FORMAT;
+
+	private int minTermLength = PinyinTransformTokenFilter.DEFAULT_MIN_TERM_LENGTH;
+
+	private boolean outOriginal = PinyinTransformTokenFilter.DEFAULT_IS_OUT_ORIGINAL;
+
+	private int mixShortLength = PinyinTransformTokenFilter.DEFAULT_MIX_SHORT_LENGTH;
+
+	/**
+	 * 生成混合拼音的最少中文字数，-1为按输出格式确定
+	 */
+	private int minMixLength = -1;
+
+	private int maxVariants = PinyinTransformTokenFilter.DEFAULT_MAX_VARIANTS;
+
+	private int maxReadings = PinyinTransformTokenFilter.DEFAULT_MAX_READINGS;
+
+	private PinyinWordDictionary dictionary;
+
+	private PinyinExpansionCache cache;
+
+	private PinyinFilterMetrics metrics;
+
+	private boolean graph;
+
+	private PinyinFuzzyRules fuzzy;
+
+	private boolean binary;
+
+	/**
+	 *
+	 * @param outputFormat
+	 *            输出格式：全拼、简拼、全拼和简拼、按音节{@link OutputFormat}
+	 * @return this
+	 */
+	public PinyinTransformOptions setOutputFormat(OutputFormat outputFormat) {
+		this.outputFormat = outputFormat;
+		return this;
+	}
+
+	public OutputFormat getOutputFormat() {
+		return this.outputFormat;
+	}
+
+	/**
+	 *
+	 * @param minTermLength
+	 *            中文词组最小转换长度
+	 * @return this
+	 */
+	public PinyinTransformOptions setMinTermLength(int minTermLength) {
+		this.minTermLength = minTermLength;
+		return this;
+	}
+
+	public int getMinTermLength() {
+		return this.minTermLength;
+	}
+
+	/**
+	 *
+	 * @param outOriginal
+	 *            是否输出原词元，只用于过滤器
+	 * @return this
+	 */
+	public PinyinTransformOptions setOutOriginal(boolean outOriginal) {
+		this.outOriginal = outOriginal;
+		return this;
+	}
+
+	public boolean isOutOriginal() {
+		return this.outOriginal;
+	}
+
+	/**
+	 *
+	 * @param mixShortLength
+	 *            简拼和全拼混合模式时，简拼的长度，中文长度大于等于3，且此值应当大于1小于中文长度-1，0为不输出混合拼音
+	 * @return this
+	 */
+	public PinyinTransformOptions setMixShortLength(int mixShortLength) {
+		this.mixShortLength = mixShortLength;
+		return this;
+	}
+
+	public int getMixShortLength() {
+		return this.mixShortLength;
+	}
+
+	/**
+	 *
+	 * @param minMixLength
+	 *            生成混合拼音的最少中文字数，未设置时输出简拼为3，只输出全拼为2
+	 * @return this
+	 */
+	public PinyinTransformOptions setMinMixLength(int minMixLength) {
+		if (minMixLength < 0) {
+			throw new IllegalArgumentException("minMixLength must not be negative");
+		}
+		this.minMixLength = minMixLength;
+		return this;
+	}
+
+	public int getMinMixLength() {
+		return this.minMixLength >= 0 ? this.minMixLength
+				: PinyinTermTransformer.defaultMinMixLength(this.outputFormat);
+	}
+
+	/**
+	 *
+	 * @param maxVariants
+	 *            每种输出（简拼、全拼、混合拼音）最多输出的拼音个数，常用读音优先，0为不限制
+	 * @return this
+	 */
+	public PinyinTransformOptions setMaxVariants(int maxVariants) {
+		this.maxVariants = maxVariants;
+		return this;
+	}
+
+	public int getMaxVariants() {
+		return this.maxVariants;
+	}
+
+	/**
+	 *
+	 * @param maxReadings
+	 *            每个多音字最多使用的读音个数，按常用程度保留，0为不限制
+	 * @return this
+	 */
+	public PinyinTransformOptions setMaxReadings(int maxReadings) {
+		this.maxReadings = maxReadings;
+		return this;
+	}
+
+	public int getMaxReadings() {
+		return this.maxReadings;
+	}
+
+	/**
+	 *
+	 * @param dictionary
+	 *            词语拼音词典，词典中的词语使用词典读音，其余字逐字转换，可为null
+	 * @return this
+	 */
+	public PinyinTransformOptions setDictionary(PinyinWordDictionary dictionary) {
+		this.dictionary = dictionary;
+		return this;
+	}
+
+	public PinyinWordDictionary getDictionary() {
+		return this.dictionary;
+	}
+
+	/**
+	 *
+	 * @param cache
+	 *            转换结果缓存，只能由相同配置的使用者共享，可为null
+	 * @return this
+	 */
+	public PinyinTransformOptions setCache(PinyinExpansionCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	public PinyinExpansionCache getCache() {
+		return this.cache;
+	}
+
+	/**
+	 *
+	 * @param metrics
+	 *            运行指标，只用于过滤器，可为null
+	 * @return this
+	 */
+	public PinyinTransformOptions setMetrics(PinyinFilterMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	public PinyinFilterMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 *
+	 * @param graph
+	 *            是否以词元图输出：每个汉字占一个位置，位置上并列该字的各个读音（全拼和/或简拼首字母），
+	 *            原词元的位置长度为汉字个数。拼音组合个数由各读音个数之积变为之和，简拼全拼任意混合均可匹配，
+	 *            因此忽略mixShortLength、maxVariants和cache。{@link OutputFormat#SYLLABLE}总是以词元图输出
+	 * @return this
+	 */
+	public PinyinTransformOptions setGraph(boolean graph) {
+		this.graph = graph;
+		return this;
+	}
+
+	/**
+	 *
+	 * @return 是否以词元图输出，包括按音节输出
+	 */
+	public boolean isGraph() {
+		return this.graph || this.outputFormat == OutputFormat.SYLLABLE;
+	}
+
+	/**
+	 *
+	 * @param fuzzy
+	 *            模糊音规则，每个音节输出前归并为规范拼写，索引端和查询端需使用相同规则，可为null
+	 * @return this
+	 */
+	public PinyinTransformOptions setFuzzy(PinyinFuzzyRules fuzzy) {
+		this.fuzzy = fuzzy;
+		return this;
+	}
+
+	public PinyinFuzzyRules getFuzzy() {
+		return this.fuzzy;
+	}
+
+	/**
+	 *
+	 * @param binary
+	 *            是否以{@link PinyinSyllableCodec}编码输出拼音，每个音节约9位，词典远小于拼音文本；
+	 *            编码后的拼音只能精确匹配，不能再做NGram切分
+	 * @return this
+	 */
+	public PinyinTransformOptions setBinary(boolean binary) {
+		this.binary = binary;
+		return this;
+	}
+
+	public boolean isBinary() {
+		return this.binary;
+	}
+}
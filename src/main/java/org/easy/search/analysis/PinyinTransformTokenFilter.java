@@ -1,25 +1,15 @@
 package org.easy.search.analysis;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Set;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
-
-import net.sourceforge.pinyin4j.PinyinHelper;
-import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
-import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
-import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
-import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+import org.apache.lucene.util.ArrayUtil;
 
 public class PinyinTransformTokenFilter extends TokenFilter {
 
@@ -43,35 +33,73 @@ public class PinyinTransformTokenFilter extends TokenFilter {
 	 */
 	public static final int DEFAULT_MIX_SHORT_LENGTH = 0;
 
+	/**
+	 * 每个词元每种输出（简拼、全拼、混合拼音）最多输出的拼音个数，默认0不限制
+	 */
+	public static final int DEFAULT_MAX_VARIANTS = 0;
+
+	/**
+	 * 每个多音字最多使用的读音个数，按常用程度保留，默认0不限制
+	 */
+	public static final int DEFAULT_MAX_READINGS = 0;
+
+	/**
+	 * 汉字所在的最大码点：基本平面及第二、三平面（扩展B区以后）
+	 */
+	private static final int MAX_CHINESE_CODE_POINT = 0x3FFFF;
+
+	/**
+	 * 中文码点位图，按{@link Character#isIdeographic(int)}预先计算
+	 */
+	private static final long[] CHINESE_CODE_POINTS = new long[(MAX_CHINESE_CODE_POINT + 1) >>> 6];
+
+	static {
+		for (int c = 0; c <= MAX_CHINESE_CODE_POINT; c++) {
+			if (Character.isIdeographic(c)) {
+				CHINESE_CODE_POINTS[c >>> 6] |= 1L << c;
+			}
+		}
+	}
+
 	/**
 	 * 原词元输出标识
 	 */
 	private boolean isOutOriginalTerm;
 
 	/**
-	 * 输出格式
+	 * 是否以词元图输出：每个汉字一个位置，位置上为该字的各个读音，原词元跨越全部位置
 	 */
-	private OutputFormat outputFormat;
+	private final boolean graph;
 
 	/**
-	 * 简拼全拼混合时，简拼长度
+	 * 图模式下当前词元的位置增量
 	 */
-	private int mixShortLength;
+	private int curPosIncr;
 
 	/**
-	 * 转换拼音的最小中文词组长度
+	 * 图模式下上一个输出的读音所在位置，-1为尚未输出读音
 	 */
-	private int minTermLength;
+	private int lastPosition;
 
 	/**
-	 * 拼音转接输出格式
+	 * 运行指标的本地计数，可为null
 	 */
-	private HanyuPinyinOutputFormat pinyinOutputFormat = new HanyuPinyinOutputFormat();
+	private final PinyinFilterMetrics.Recorder recorder;
+
+	/**
+	 * 当前词元已输出的词元数
+	 */
+	private int termEmitted;
 
 	/**
 	 * 当前处理词元（即原词元，例如输入的词元为中国）
 	 */
-	private char[] curTermBuffer;
+	private char[] curTermBuffer = new char[16];
+
+	/**
+	 * 是否有当前处理词元
+	 */
+	private boolean hasCurTerm = false;
 
 	/**
 	 * 当前处理词元长度
@@ -88,25 +116,45 @@ public class PinyinTransformTokenFilter extends TokenFilter {
 	 */
 	private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
 
+	/**
+	 * 位置长度属性
+	 */
+	private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
+
 	/**
 	 * 类型属性
 	 */
 	private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
 
+	/**
+	 * 音节边界属性
+	 */
+	private final PinyinSyllableAttribute syllableAtt = addAttribute(PinyinSyllableAttribute.class);
+
+	/**
+	 * 当前拼音的音节结束位置
+	 */
+	private int[] syllableEnds = new int[8];
+
 	/**
 	 * 当前输入是否已输出
 	 */
 	private boolean hasCurOut = false;
 
 	/**
-	 * 拼音结果集
+	 * 当前词元是否已转换拼音
 	 */
-	private Collection<String> terms = new ArrayList<String>();
+	private boolean hasTransformed = false;
 
 	/**
-	 * 拼音结果集迭代器
+	 * 当前词元的拼音词元类型，不转换时为null
 	 */
-	private Iterator<String> termIte = null;
+	private String pinyinType;
+
+	/**
+	 * 词元拼音转换
+	 */
+	private final PinyinTermTransformer transformer;
 
 	/**
 	 * 构造器。默认保留原中文词元
@@ -158,16 +206,25 @@ public class PinyinTransformTokenFilter extends TokenFilter {
 	public PinyinTransformTokenFilter(TokenStream input, OutputFormat outputFormat, int minTermLength,
 			boolean isOutOriginalTerm, int mixShortLength) {
 
+		this(input, new PinyinTransformOptions().setOutputFormat(outputFormat).setMinTermLength(minTermLength)
+				.setOutOriginal(isOutOriginalTerm).setMixShortLength(mixShortLength));
+	}
+
+	/**
+	 * 构造器
+	 * 
+	 * @param input
+	 *            词元
+	 * @param options
+	 *            转换配置，构造时读取，见{@link PinyinTransformOptions}
+	 */
+	public PinyinTransformTokenFilter(TokenStream input, PinyinTransformOptions options) {
+
 		super(input);
-		this.minTermLength = minTermLength;
-		if (this.minTermLength < 1) {
-			this.minTermLength = 1;
-		}
-		this.isOutOriginalTerm = isOutOriginalTerm;
-		this.pinyinOutputFormat.setCaseType(HanyuPinyinCaseType.LOWERCASE);
-		this.pinyinOutputFormat.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
-		this.outputFormat = outputFormat;
-		this.mixShortLength = mixShortLength;
+		this.isOutOriginalTerm = options.isOutOriginal();
+		this.graph = options.isGraph();
+		this.recorder = options.getMetrics() == null ? null : new PinyinFilterMetrics.Recorder(options.getMetrics());
+		this.transformer = new PinyinTermTransformer(options, this.recorder);
 		addAttribute(OffsetAttribute.class); // 偏移量属性
 	}
 
@@ -181,22 +238,54 @@ public class PinyinTransformTokenFilter extends TokenFilter {
 		int count = 0;
 		if ((null == str) || ("".equals(str.trim())))
 			return count;
-		for (int i = 0; i < str.length(); i++) {
-			if (isChinese(str.charAt(i)))
+		for (int i = 0; i < str.length();) {
+			int codePoint = str.codePointAt(i);
+			if (isChinese(codePoint))
+				count++;
+			i += Character.charCount(codePoint);
+		}
+		return count;
+	}
+
+	/**
+	 * 中文字符统计
+	 * 
+	 * @param buffer input chars
+	 * @param offset start offset
+	 * @param length char count
+	 * @return return count result，代理对按一个字符统计
+	 */
+	public static int countChineseChar(char[] buffer, int offset, int length) {
+		int count = 0;
+		int limit = offset + length;
+		for (int i = offset; i < limit;) {
+			int codePoint = Character.codePointAt(buffer, i, limit);
+			if (isChinese(codePoint))
 				count++;
+			i += Character.charCount(codePoint);
 		}
 		return count;
 	}
 
 	/**
-	 * 判断字符是否为中文
+	 * 判断字符是否为中文，代理对请使用{@link #isChinese(int)}
 	 * 
 	 * @param a chinese char
 	 * @return chinese char return true else false
 	 */
 	public static boolean isChinese(char a) {
-		int v = a;
-		return (v >= 19968) && (v <= 171941);
+		return isChinese((int) a);
+	}
+
+	/**
+	 * 判断码点是否为中文（汉字，包括扩展B区以后的增补平面汉字）
+	 * 
+	 * @param codePoint 码点
+	 * @return chinese char return true else false
+	 */
+	public static boolean isChinese(int codePoint) {
+		return codePoint >= 0 && codePoint <= MAX_CHINESE_CODE_POINT
+				&& (CHINESE_CODE_POINTS[codePoint >>> 6] & (1L << codePoint)) != 0;
 	}
 
 	/**
@@ -206,113 +295,70 @@ public class PinyinTransformTokenFilter extends TokenFilter {
 		while (true) {
 
 			// 当前无处理词元，则查找下一词元
-			if (this.curTermBuffer == null) {
+			if (!this.hasCurTerm) {
 
 				if (!this.input.incrementToken()) {
 					// 没有待处理词元
 					return false;
 				}
 				// 缓存词元
-				this.curTermBuffer = this.termAtt.buffer().clone();
 				this.curTermLength = this.termAtt.length();
+				this.curTermBuffer = ArrayUtil.grow(this.curTermBuffer, this.curTermLength);
+				System.arraycopy(this.termAtt.buffer(), 0, this.curTermBuffer, 0, this.curTermLength);
+				this.hasCurTerm = true;
+				this.curPosIncr = this.posIncrAtt.getPositionIncrement();
+				this.lastPosition = -1;
+				if (this.graph) {
+					// 图模式下原词元的位置长度取决于转换结果
+					transform();
+				}
 			}
 			// 输出原词元
-			if ((this.isOutOriginalTerm) && (!this.hasCurOut) && (this.termIte == null)) {
+			if ((this.isOutOriginalTerm) && (!this.hasCurOut) && (this.graph || !this.hasTransformed)) {
 				// 原词元已经输出，标识设置为true
 				this.hasCurOut = true;
 				// 写入原输入词元
 				this.termAtt.copyBuffer(this.curTermBuffer, 0, this.curTermLength);
 				this.posIncrAtt.setPositionIncrement(this.posIncrAtt.getPositionIncrement());
+				if (this.graph && this.pinyinType != null) {
+					this.posLenAtt.setPositionLength(this.transformer.syllableCount());
+				}
+				this.syllableAtt.setSyllableEnds(this.syllableEnds, 0);
+				this.termEmitted++;
 				// 进入下次循环
 				return true;
 			}
-			String chinese = this.termAtt.toString();
-
-			int chineseCount = countChineseChar(chinese);
-
-			// 判断是否符合处理长度
-			if (chineseCount >= this.minTermLength) {
-
-				try {
-					this.terms.clear();
-
-					// 获取拼音结果
-					List<String[]> pinyinList = getPinyinList(chinese);
-
-					// 简拼集合
-					Collection<String> shortList = null;
-					// 全拼集合
-					Collection<String> fullList = null;
-
-					switch (outputFormat) {
-					case BOTH:// 简拼和全拼
-						shortList = getShort(pinyinList);
-						fullList = getFull(pinyinList);
-						this.typeAtt.setType("both_pinyin");
-						break;
-					case SHORT:// 简拼
-						shortList = getShort(pinyinList);
-						this.typeAtt.setType("short_pinyin");
-						break;
-					case FULL:// 全拼
-						fullList = getFull(pinyinList);
-						this.typeAtt.setType("full_pinyin");
-						break;
-					default:
-						shortList = getShort(pinyinList);
-						fullList = getFull(pinyinList);
-						this.typeAtt.setType("both_pinyin");
-						break;
-					}
-
-					if (shortList != null)
-						this.terms.addAll(shortList);
-					if (fullList != null) {
-						this.terms.addAll(fullList);
-					}
-
-					// 在有简拼的情况下中文长度应最小为3
-					if (mixShortLength > 0) {
-						if (shortList == null) {
-							// 在无简拼的情况下中文长度应最小为2
-							if (fullList != null && chineseCount > 1) {
-								Collection<String> minShortList = getMix(pinyinList, mixShortLength);
-								if (null != minShortList)
-									this.terms.addAll(minShortList);
-							}
-						} else {
-							if (chineseCount > 2) {
-								Collection<String> mixList = getMix(pinyinList, mixShortLength);
-								if (null != mixList)
-									this.terms.addAll(mixList);
-							}
-						}
-					}
-
-					if (this.terms != null && this.terms.size() > 0) {
-						this.termIte = this.terms.iterator();
+			if (!this.hasTransformed) {
+				transform();
+			}
+			// 未输出的拼音组合
+			if (this.transformer.next()) {
+				this.transformer.write(this.termAtt);
+				this.typeAtt.setType(this.pinyinType);
+				if (this.graph) {
+					// 同一位置上的读音并列，第一个读音沿用原词元的位置
+					int position = this.transformer.position();
+					if (this.lastPosition < 0) {
+						this.posIncrAtt.setPositionIncrement(this.hasCurOut ? 0 : this.curPosIncr);
+					} else {
+						this.posIncrAtt.setPositionIncrement(position - this.lastPosition);
 					}
-				} catch (BadHanyuPinyinOutputFormatCombination badHanyuPinyinOutputFormatCombination) {
-					badHanyuPinyinOutputFormatCombination.printStackTrace();
-				} catch (Exception e) {
-					// TODO: handle exception
-					e.printStackTrace();
+					this.lastPosition = position;
+					this.posLenAtt.setPositionLength(1);
 				}
-
+				this.syllableEnds = ArrayUtil.grow(this.syllableEnds, this.transformer.syllableCount());
+				this.syllableAtt.setSyllableEnds(this.syllableEnds, this.transformer.syllableEnds(this.syllableEnds));
+				this.termEmitted++;
+				return true;
 			}
-			if (this.termIte != null) {
-				// 未处理的拼音结果集
-				while (this.termIte.hasNext()) {
-					String pinyin = this.termIte.next();
-					this.termAtt.copyBuffer(pinyin.toCharArray(), 0, pinyin.length());
-					this.posIncrAtt.setPositionIncrement(this.posIncrAtt.getPositionIncrement());
-					return true;
-				}
+			if (this.recorder != null) {
+				this.recorder.term(this.termEmitted, this.transformer.isTruncated());
 			}
+			this.termEmitted = 0;
 
 			// 清理缓存
-			this.curTermBuffer = null;
-			this.termIte = null;
+			this.hasCurTerm = false;
+			this.hasTransformed = false;
 			// 重置原词元输出标识
 			this.hasCurOut = false;
 
@@ -320,164 +366,34 @@ public class PinyinTransformTokenFilter extends TokenFilter {
 	}
 
 	/**
-	 * 获取拼音缩写
-	 * 
-	 * @param pinyinList
-	 *            拼音集合
-	 * @return 转换后的文本
-	 * @throws BadHanyuPinyinOutputFormatCombination
+	 * 转换当前词元
 	 */
-	private Collection<String> getShort(List<String[]> pinyinList) throws BadHanyuPinyinOutputFormatCombination {
-
-		Set<String> pinyins = null;
-		for (String[] array : pinyinList) {
-			if (pinyins == null || pinyins.isEmpty()) {
-				pinyins = new HashSet<String>();
+	private void transform() {
+		this.hasTransformed = true;
+		this.pinyinType = this.transformer.transform(this.curTermBuffer, this.curTermLength);
+	}
 
-				for (String charPinpin : array) {
-					pinyins.add(charPinpin.substring(0, 1));
-				}
-			} else {
-				Set<String> pres = pinyins;
-				pinyins = new HashSet<String>();
-				for (String pre : pres) {
-					for (String charPinyin : array) {
-						pinyins.add(pre + charPinyin.substring(0, 1));
-					}
-				}
-			}
+	@Override
+	public void end() throws IOException {
+		super.end();
+		if (this.recorder != null) {
+			this.recorder.flush();
 		}
-		return pinyins;
 	}
 
 	public void reset() throws IOException {
 		super.reset();
-		this.curTermBuffer = null;
-		this.termIte = null;
+		if (this.recorder != null) {
+			this.recorder.flush();
+		}
+		this.termEmitted = 0;
+		this.hasCurTerm = false;
+		this.hasTransformed = false;
+		this.transformer.reset();
 		// 重置原词元以输出标识
 		this.hasCurOut = false;
 	}
 
-	/**
-	 * 
-	 * @param str
-	 *            字符串
-	 * @return 返回中文字符拼音，非中文忽略
-	 * @throws BadHanyuPinyinOutputFormatCombination
-	 */
-	private List<String[]> getPinyinList(String str) throws BadHanyuPinyinOutputFormatCombination {
-		List<String[]> pinyinList = new ArrayList<String[]>();
-		for (int i = 0; i < str.length(); i++) {
-			String[] pinyinArray = PinyinHelper.toHanyuPinyinStringArray(str.charAt(i), this.pinyinOutputFormat);
-			if (pinyinArray != null && pinyinArray.length > 0) {
-				pinyinList.add(pinyinArray);
-			}
-		}
-		return pinyinList;
-	}
-
-	/**
-	 * 获取全拼
-	 * 
-	 * @param pinyinList
-	 *            拼音集合
-	 * @return 转换后的文本集合
-	 * @throws BadHanyuPinyinOutputFormatCombination
-	 */
-	private Collection<String> getFull(List<String[]> pinyinList) throws BadHanyuPinyinOutputFormatCombination {
-
-		Set<String> pinyins = null;
-		for (String[] array : pinyinList) {
-			if (pinyins == null || pinyins.isEmpty()) {
-				pinyins = new HashSet<String>();
-				for (String charPinyin : array) {
-
-					pinyins.add(charPinyin);
-				}
-			} else {
-				Set<String> pres = pinyins;
-				pinyins = new HashSet<String>();
-				for (String pre : pres) {
-					for (String charPinyin : array) {
-
-						pinyins.add(pre + charPinyin);
-					}
-				}
-			}
-		}
-		return pinyins;
-	}
-
-	/**
-	 * 
-	 * * @param pinyinList 拼音集合
-	 * 
-	 * @param shortLength
-	 *            从左边开始简拼的长度
-	 * @return 转换后的文本集合
-	 * @throws BadHanyuPinyinOutputFormatCombination
-	 */
-	private Collection<String> getMix(List<String[]> pinyinList, int shortLength)
-			throws BadHanyuPinyinOutputFormatCombination {
-		if (shortLength <= 0) {
-			return new HashSet<String>();
-		}
-
-		//最大长度为拼音长度-1，最后一个首字母始终链接，因此最后一个进行首字母没有意义
-		shortLength = Math.min(shortLength, pinyinList.size() - 1);
-
-		if (shortLength > 10) {
-			shortLength = 10;
-		}
-
-		Set<String> pinyins = null;
-		for (int index = 1; index <= shortLength; index++) {
-
-			Set<String> tmppinyins = null;
-			int currLen = 1;
-
-			for (String[] array : pinyinList) {
-
-				if (tmppinyins == null || tmppinyins.isEmpty()) {
-					tmppinyins = new HashSet<String>();
-
-					for (String charPinpin : array) {
-						tmppinyins.add(charPinpin.substring(0, 1));
-					}
-				} else {
-					Set<String> pres = tmppinyins;
-					tmppinyins = new HashSet<String>();
-					for (String pre : pres) {
-
-						for (String charPinyin : array) {
-
-							if (currLen <= index) {
-								tmppinyins.add(pre + charPinyin.substring(0, 1));
-
-							} else {
-								tmppinyins.add(pre + charPinyin);
-
-							}
-
-						}
-					}
-
-				}
-
-				currLen++;
-
-			}
-
-			if (pinyins == null || pinyins.isEmpty()) {
-				pinyins = tmppinyins;
-			} else {
-				pinyins.addAll(tmppinyins);
-			}
-		}
-
-		return pinyins;
-	}
-
 	/**
 	 * 输出格式
 	 */
@@ -504,6 +420,14 @@ public class PinyinTransformTokenFilter extends TokenFilter {
 			public String getLabel() {
 				return "both";
 			}
+		},
+
+		/** 按音节输出全拼，每个音节一个词元，多音字的读音并列在同一位置 */
+		SYLLABLE {
+			@Override
+			public String getLabel() {
+				return "syllable";
+			}
 		};
 
 		public abstract String getLabel();
@@ -519,6 +443,9 @@ public class PinyinTransformTokenFilter extends TokenFilter {
 			if (BOTH.getLabel().equals(format)) {
 				return BOTH;
 			}
+			if (SYLLABLE.getLabel().equals(format)) {
+				return SYLLABLE;
+			}
 			return null;
 		}
 
@@ -1,33 +1,98 @@
 package org.easy.search.analysis;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.apache.lucene.analysis.util.WordlistLoader;
 import org.easy.search.analysis.PinyinTransformTokenFilter.OutputFormat;
 
-public class PinyinTransformTokenFilterFactory extends TokenFilterFactory {
+public class PinyinTransformTokenFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
 
 	/**
-	 * 输出原词元标识
+	 * 文本格式词典
 	 */
-	private boolean isOutOriginal = PinyinTransformTokenFilter.DEFAULT_IS_OUT_ORIGINAL;
+	public static final String DICT_FORMAT_TEXT = "text";
 
 	/**
-	 * 中文词组最小转换长度，默认大于2的中文进行转换拼音
+	 * 预编译的FST格式词典
 	 */
-	private int minTermLength = PinyinTransformTokenFilter.DEFAULT_MIN_TERM_LENGTH;
+	public static final String DICT_FORMAT_FST = "fst";
 
 	/**
-	 * 输出格式，默认简拼和全拼全部输出
+	 * core加载时在后台预加载拼音查找表
 	 */
-	private OutputFormat outputFormat = PinyinTransformTokenFilter.DEFAULT_OUTPUT_FORMAT;
+	public static final String WARMUP_ASYNC = "async";
 
 	/**
-	 * 混合输出，从左边开始，简拼的长度,默认为0，不输出混合拼音
+	 * core加载时等待拼音查找表加载完成，加载失败时core加载失败
 	 */
-	private int mixShortLength = PinyinTransformTokenFilter.DEFAULT_MIX_SHORT_LENGTH;
+	public static final String WARMUP_SYNC = "sync";
+
+	/**
+	 * 不预加载，首次使用时加载
+	 */
+	public static final String WARMUP_NONE = "none";
+
+	/**
+	 * 转换配置，词典在inform时设置
+	 */
+	private final PinyinTransformOptions options;
+
+	/**
+	 * 运行指标
+	 */
+	private final PinyinFilterMetrics metrics = new PinyinFilterMetrics("PinyinTransformTokenFilter");
+
+	/**
+	 * 运行指标的JMX名称，未配置时为null
+	 */
+	private final String metricsName;
+
+	/**
+	 * 词语拼音词典文件，多个文件以逗号分隔
+	 */
+	private final String dictFiles;
+
+	/**
+	 * 词语拼音词典格式，text文本格式，fst预编译格式
+	 */
+	private final String dictFormat;
+
+	/**
+	 * 拼音查找表预加载方式
+	 */
+	private final String warmup;
+
+	/**
+	 * 词典文件检查间隔（秒），0为不检查
+	 */
+	private final int dictReloadInterval;
+
+	/**
+	 * 词语拼音词典，未配置时为null
+	 */
+	private ReloadablePinyinWordDictionary dictionary;
+
+	/**
+	 * 转换结果缓存，cacheSize为0或图模式时不缓存
+	 */
+	private final PinyinExpansionCache cache;
 
 	/**
 	 * 
@@ -36,17 +101,189 @@ public class PinyinTransformTokenFilterFactory extends TokenFilterFactory {
 	 */
 	public PinyinTransformTokenFilterFactory(Map<String, String> args) {
 		super(args);
-		this.isOutOriginal = getBoolean(args, "outOriginal", PinyinTransformTokenFilter.DEFAULT_IS_OUT_ORIGINAL);
-		this.outputFormat = OutputFormat
-				.getOutFormat(get(args, "outputFormat", PinyinTransformTokenFilter.DEFAULT_OUTPUT_FORMAT.getLabel()));
-		this.minTermLength = getInt(args, "minTerm", PinyinTransformTokenFilter.DEFAULT_MIN_TERM_LENGTH);
-		this.mixShortLength = getInt(args, "mixShort", PinyinTransformTokenFilter.DEFAULT_MIX_SHORT_LENGTH);
+		this.options = new PinyinTransformOptions()
+				.setOutOriginal(getBoolean(args, "outOriginal", PinyinTransformTokenFilter.DEFAULT_IS_OUT_ORIGINAL))
+				.setOutputFormat(OutputFormat.getOutFormat(
+						get(args, "outputFormat", PinyinTransformTokenFilter.DEFAULT_OUTPUT_FORMAT.getLabel())))
+				.setMinTermLength(getInt(args, "minTerm", PinyinTransformTokenFilter.DEFAULT_MIN_TERM_LENGTH))
+				.setMixShortLength(getInt(args, "mixShort", PinyinTransformTokenFilter.DEFAULT_MIX_SHORT_LENGTH))
+				.setMaxVariants(getInt(args, "maxVariants", PinyinTransformTokenFilter.DEFAULT_MAX_VARIANTS))
+				.setMaxReadings(getInt(args, "maxReadings", PinyinTransformTokenFilter.DEFAULT_MAX_READINGS));
+		this.dictFiles = get(args, "dict");
+		this.dictFormat = get(args, "dictFormat", Arrays.asList(DICT_FORMAT_TEXT, DICT_FORMAT_FST), DICT_FORMAT_TEXT);
+		this.dictReloadInterval = getInt(args, "dictReloadInterval", 0);
+		this.warmup = get(args, "warmup", Arrays.asList(WARMUP_ASYNC, WARMUP_SYNC, WARMUP_NONE), WARMUP_ASYNC);
+		this.options.setGraph(getBoolean(args, "graph", false)).setFuzzy(PinyinFuzzyRules.parse(get(args, "fuzzy")))
+				.setBinary(getBoolean(args, "binary", false)).setMetrics(this.metrics);
+		int cacheSize = getInt(args, "cacheSize", 0);
+		this.cache = cacheSize > 0 && !this.options.isGraph() ? new PinyinExpansionCache(cacheSize) : null;
+		this.options.setCache(this.cache);
+		this.metrics.setCache(this.cache);
+		this.metricsName = get(args, "metricsName");
 		if (!args.isEmpty())
 			throw new IllegalArgumentException("Unknown parameters: " + args);
 	}
 
+	@Override
+	public void inform(ResourceLoader loader) throws IOException {
+		warmUp(this.warmup);
+		this.dictionary = loadReloadableDictionary(loader, this.dictFiles, this.dictFormat, this.cache,
+				this.dictReloadInterval);
+		this.options.setDictionary(this.dictionary);
+		if (this.metricsName != null) {
+			this.metrics.register(this.metricsName, loader);
+		}
+	}
+
+	/**
+	 * 加载可重新加载的词语拼音词典
+	 * 
+	 * @param loader
+	 *            资源加载器
+	 * @param dictFiles
+	 *            词典文件，多个文件以逗号分隔，可为null
+	 * @param dictFormat
+	 *            词典格式
+	 * @param cache
+	 *            重新加载时清空的转换结果缓存，可为null
+	 * @param reloadInterval
+	 *            词典文件检查间隔（秒），0为不检查
+	 * @return 词典，未配置词典文件时返回null
+	 * @throws IOException
+	 *             读取失败
+	 */
+	static ReloadablePinyinWordDictionary loadReloadableDictionary(ResourceLoader loader, String dictFiles,
+			String dictFormat, PinyinExpansionCache cache, int reloadInterval) throws IOException {
+		if (dictFiles == null) {
+			return null;
+		}
+		ReloadablePinyinWordDictionary dictionary = new ReloadablePinyinWordDictionary(loader, dictFiles, dictFormat,
+				cache);
+		if (reloadInterval > 0) {
+			dictionary.watch(reloadInterval);
+		}
+		return dictionary;
+	}
+
+	/**
+	 * 重新加载词语拼音词典，无需重新加载core。新词典在调用线程中构建后整体替换，正在使用的词元流不受影响，
+	 * 转换结果缓存同时清空
+	 * 
+	 * @return 未配置词典时返回false
+	 * @throws IOException
+	 *             读取失败或格式错误，此时继续使用原词典
+	 */
+	public boolean reloadDictionary() throws IOException {
+		return this.dictionary != null && this.dictionary.reload(true);
+	}
+
+	/**
+	 * 预加载拼音查找表
+	 * 
+	 * @param warmup
+	 *            预加载方式，{@link #WARMUP_ASYNC}、{@link #WARMUP_SYNC}或{@link #WARMUP_NONE}
+	 * @throws IOException
+	 *             同步预加载失败或被中断
+	 */
+	static void warmUp(String warmup) throws IOException {
+		if (WARMUP_NONE.equals(warmup)) {
+			return;
+		}
+		Future<PinyinCharTable> task = PinyinCharTable.warmUp();
+		if (!WARMUP_SYNC.equals(warmup)) {
+			return;
+		}
+		try {
+			task.get();
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to load pinyin table", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while loading pinyin table");
+		}
+	}
+
+	/**
+	 * 分隔词典文件名，同AbstractAnalysisFactory.splitFileNames，以未转义的逗号分隔
+	 * 
+	 * @param dictFiles
+	 *            词典文件，多个文件以逗号分隔
+	 * @return 文件名
+	 */
+	static List<String> splitDictFiles(String dictFiles) {
+		List<String> files = new ArrayList<String>();
+		for (String file : dictFiles.split("(?<!\\\\),")) {
+			files.add(file.replaceAll("\\\\(?=,)", ""));
+		}
+		return files;
+	}
+
+	/**
+	 * 加载词语拼音词典
+	 * 
+	 * @param loader
+	 *            资源加载器
+	 * @param dictFiles
+	 *            词典文件，多个文件以逗号分隔，可为null
+	 * @param dictFormat
+	 *            词典格式，{@link #DICT_FORMAT_TEXT}或{@link #DICT_FORMAT_FST}
+	 * @return 词典，未配置词典文件时返回null
+	 * @throws IOException
+	 *             读取失败
+	 */
+	static PinyinWordDictionary loadDictionary(ResourceLoader loader, String dictFiles, String dictFormat)
+			throws IOException {
+		if (dictFiles == null) {
+			return null;
+		}
+		List<String> files = splitDictFiles(dictFiles);
+		if (DICT_FORMAT_FST.equals(dictFormat)) {
+			if (files.size() != 1) {
+				throw new IllegalArgumentException("Only one fst dictionary is supported: " + dictFiles);
+			}
+			Path path = Paths.get(files.get(0).trim());
+			if (path.isAbsolute() && Files.isRegularFile(path)) {
+				// 本地文件加载到堆内存，同一文件多个core共享一份
+				return FSTPinyinWordDictionary.open(path);
+			}
+			try (InputStream in = loader.openResource(files.get(0).trim())) {
+				return FSTPinyinWordDictionary.load(in);
+			}
+		}
+		List<String> lines = new ArrayList<String>();
+		for (String file : files) {
+			try (InputStream in = loader.openResource(file.trim())) {
+				lines.addAll(WordlistLoader.getLines(in, StandardCharsets.UTF_8));
+			}
+		}
+		return MapPinyinWordDictionary.parse(lines);
+	}
+
 	public TokenFilter create(TokenStream input) {
-		return new PinyinTransformTokenFilter(input, this.outputFormat, this.minTermLength, this.isOutOriginal,
-				mixShortLength);
+		return new PinyinTransformTokenFilter(input, this.options);
+	}
+
+	/**
+	 * 
+	 * @return 转换结果缓存，未启用时返回null
+	 */
+	public PinyinExpansionCache getCache() {
+		return this.cache;
+	}
+
+	/**
+	 * 
+	 * @return 拼音个数或读音个数超过限制而被截断的词元数
+	 */
+	public long getTruncatedCount() {
+		return this.metrics.getCappedTokens();
+	}
+
+	/**
+	 * 
+	 * @return 运行指标，在词元流end()或reset()后更新
+	 */
+	public PinyinFilterMetrics getMetrics() {
+		return this.metrics;
 	}
 }
@@ -0,0 +1,284 @@
+package org.easy.search.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.update.processor.UpdateRequestProcessorFactory;
+import org.apache.solr.util.plugin.SolrCoreAware;
+import org.easy.search.analysis.PinyinTransformTokenFilter.OutputFormat;
+
+/**
+ * 拼音更新处理器工厂，每个文档只转换一次来源字段，将全拼、简拼、混合拼音分别写入目标字段。
+ * <p>
+ * 多个拼音字段类型各自以copyField复制同一来源字段时，每个分析链都要重新展开多音字组合；
+ * 改为在更新处理器中转换一次，目标字段只需空白分词（及NGram）的简单分析链。来源字段的每个值作为一个词元转换，
+ * 与KeywordTokenizer之后的{@link PinyinTransformTokenFilter}相同，每个值的各个拼音以空格连接为目标字段的一个值。
+ * <p>
+ * 原子更新时来源字段的set、add操作转换为目标字段的相同操作，set没有可转换的值时清空目标字段；
+ * remove、removeregex、inc等操作无法由拼音推导，拒绝请求。
+ */
+public class PinyinUpdateProcessorFactory extends UpdateRequestProcessorFactory implements SolrCoreAware {
+
+	private String source;
+
+	/**
+	 * 全拼、简拼、混合拼音及全部拼音的目标字段，未配置时为null
+	 */
+	private String fullField;
+
+	private String shortField;
+
+	private String mixedField;
+
+	private String allField;
+
+	/**
+	 * 转换配置，词典在inform时设置
+	 */
+	private PinyinTransformOptions options;
+
+	private String dictFiles;
+
+	private String dictFormat;
+
+	private int dictReloadInterval;
+
+	/**
+	 * 词语拼音词典，未配置时为null
+	 */
+	private ReloadablePinyinWordDictionary dictionary;
+
+	@Override
+	public void init(NamedList args) {
+		this.source = get(args, "source", null);
+		this.fullField = get(args, "fullField", null);
+		this.shortField = get(args, "shortField", null);
+		this.mixedField = get(args, "mixedField", null);
+		this.allField = get(args, "allField", null);
+		// 混合拼音的最少字数与默认输出格式相同，不随配置的目标字段变化
+		this.options = new PinyinTransformOptions()
+				.setMinTermLength(getInt(args, "minTerm", PinyinTransformTokenFilter.DEFAULT_MIN_TERM_LENGTH))
+				.setMixShortLength(getInt(args, "mixShort", PinyinTransformTokenFilter.DEFAULT_MIX_SHORT_LENGTH))
+				.setMaxVariants(getInt(args, "maxVariants", PinyinTransformTokenFilter.DEFAULT_MAX_VARIANTS))
+				.setMaxReadings(getInt(args, "maxReadings", PinyinTransformTokenFilter.DEFAULT_MAX_READINGS))
+				.setFuzzy(PinyinFuzzyRules.parse(get(args, "fuzzy", null)))
+				.setMinMixLength(
+						PinyinTermTransformer.defaultMinMixLength(PinyinTransformTokenFilter.DEFAULT_OUTPUT_FORMAT));
+		this.dictFiles = get(args, "dict", null);
+		this.dictFormat = get(args, "dictFormat", PinyinTransformTokenFilterFactory.DICT_FORMAT_TEXT);
+		this.dictReloadInterval = getInt(args, "dictReloadInterval", 0);
+		if (args.size() > 0) {
+			throw new IllegalArgumentException("Unknown parameters: " + args);
+		}
+		if (this.source == null) {
+			throw new IllegalArgumentException("source is required");
+		}
+		if (this.fullField == null && this.shortField == null && this.mixedField == null && this.allField == null) {
+			throw new IllegalArgumentException("At least one of fullField, shortField, mixedField, allField is required");
+		}
+		// 只生成需要的拼音
+		boolean needShort = this.shortField != null || this.allField != null;
+		boolean needFull = this.fullField != null || this.allField != null;
+		this.options.setOutputFormat(
+				needShort && needFull ? OutputFormat.BOTH : needShort ? OutputFormat.SHORT : OutputFormat.FULL);
+		if (this.mixedField == null && this.allField == null) {
+			this.options.setMixShortLength(0);
+		}
+	}
+
+	@Override
+	public void inform(SolrCore core) {
+		try {
+			this.dictionary = PinyinTransformTokenFilterFactory.loadReloadableDictionary(core.getResourceLoader(),
+					this.dictFiles, this.dictFormat, null, this.dictReloadInterval);
+			this.options.setDictionary(this.dictionary);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to load pinyin dictionary: " + this.dictFiles, e);
+		}
+		PinyinCharTable.warmUp();
+	}
+
+	/**
+	 * 重新加载词语拼音词典，见{@link PinyinTransformTokenFilterFactory#reloadDictionary()}
+	 *
+	 * @return 未配置词典时返回false
+	 * @throws IOException
+	 *             读取失败或格式错误，此时继续使用原词典
+	 */
+	public boolean reloadDictionary() throws IOException {
+		return this.dictionary != null && this.dictionary.reload(true);
+	}
+
+	@Override
+	public UpdateRequestProcessor getInstance(SolrQueryRequest req, SolrQueryResponse rsp,
+			UpdateRequestProcessor next) {
+		return new PinyinUpdateProcessor(next, new PinyinTermTransformer(this.options, null));
+	}
+
+	private static String get(NamedList<?> args, String name, String defaultValue) {
+		Object value = args.remove(name);
+		return value != null ? value.toString() : defaultValue;
+	}
+
+	private static int getInt(NamedList<?> args, String name, int defaultValue) {
+		Object value = args.remove(name);
+		return value != null ? Integer.parseInt(value.toString()) : defaultValue;
+	}
+
+	/**
+	 * 拼音更新处理器，每个请求一个实例
+	 */
+	private final class PinyinUpdateProcessor extends UpdateRequestProcessor {
+
+		private final PinyinTermTransformer transformer;
+
+		private char[] term = new char[64];
+
+		private final StringBuilder fullValue = new StringBuilder();
+
+		private final StringBuilder shortValue = new StringBuilder();
+
+		private final StringBuilder mixedValue = new StringBuilder();
+
+		private final StringBuilder allValue = new StringBuilder();
+
+		PinyinUpdateProcessor(UpdateRequestProcessor next, PinyinTermTransformer transformer) {
+			super(next);
+			this.transformer = transformer;
+		}
+
+		@Override
+		public void processAdd(AddUpdateCommand cmd) throws IOException {
+			SolrInputDocument doc = cmd.getSolrInputDocument();
+			Collection<Object> values = doc.getFieldValues(source);
+			if (values != null) {
+				for (Object value : values.toArray()) {
+					if (value instanceof Map) {
+						convertUpdate(doc, (Map<?, ?>) value);
+					} else if (value != null) {
+						convert(doc, value.toString());
+					}
+				}
+			}
+			super.processAdd(cmd);
+		}
+
+		/**
+		 * 转换来源字段的一个值，按简拼长度将各拼音分到目标字段
+		 */
+		private void convert(SolrInputDocument doc, String text) {
+			if (!convert(text)) {
+				return;
+			}
+			addValue(doc, fullField, this.fullValue);
+			addValue(doc, shortField, this.shortValue);
+			addValue(doc, mixedField, this.mixedValue);
+			addValue(doc, allField, this.allValue);
+		}
+
+		/**
+		 * 转换来源字段的原子更新，如{set=[中国, 人民]}、{add=人民}
+		 */
+		private void convertUpdate(SolrInputDocument doc, Map<?, ?> update) {
+			String[] targets = { fullField, shortField, mixedField, allField };
+			StringBuilder[] values = { this.fullValue, this.shortValue, this.mixedValue, this.allValue };
+			List<Map<String, Object>> updates = new ArrayList<Map<String, Object>>(targets.length);
+			for (int i = 0; i < targets.length; i++) {
+				updates.add(new LinkedHashMap<String, Object>());
+			}
+			for (Map.Entry<?, ?> entry : update.entrySet()) {
+				String op = String.valueOf(entry.getKey());
+				if (!"set".equals(op) && !"add".equals(op)) {
+					throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+							"Atomic update " + op + " is not supported on pinyin source field " + source);
+				}
+				List<List<String>> converted = new ArrayList<List<String>>(targets.length);
+				for (int i = 0; i < targets.length; i++) {
+					converted.add(new ArrayList<String>());
+				}
+				for (Object item : items(entry.getValue())) {
+					if (item != null && convert(item.toString())) {
+						for (int i = 0; i < targets.length; i++) {
+							if (values[i].length() > 0) {
+								converted.get(i).add(values[i].toString());
+							}
+						}
+					}
+				}
+				for (int i = 0; i < targets.length; i++) {
+					// set没有可转换的值时清空目标字段，add没有时不修改
+					if ("set".equals(op) || !converted.get(i).isEmpty()) {
+						updates.get(i).put(op, converted.get(i).isEmpty() ? null : converted.get(i));
+					}
+				}
+			}
+			for (int i = 0; i < targets.length; i++) {
+				if (targets[i] != null && !updates.get(i).isEmpty()) {
+					doc.setField(targets[i], updates.get(i));
+				}
+			}
+		}
+
+		private Collection<?> items(Object value) {
+			if (value instanceof Collection) {
+				return (Collection<?>) value;
+			}
+			return value != null ? Collections.singletonList(value) : Collections.emptyList();
+		}
+
+		/**
+		 * 转换一个值，各拼音按简拼长度写入fullValue、shortValue、mixedValue及allValue
+		 *
+		 * @return 中文字数不足不转换时返回false
+		 */
+		private boolean convert(String text) {
+			int length = text.length();
+			if (this.term.length < length) {
+				this.term = new char[length];
+			}
+			text.getChars(0, length, this.term, 0);
+			if (this.transformer.transform(this.term, length) == null) {
+				return false;
+			}
+			this.fullValue.setLength(0);
+			this.shortValue.setLength(0);
+			this.mixedValue.setLength(0);
+			this.allValue.setLength(0);
+			int syllableCount = this.transformer.syllableCount();
+			while (this.transformer.next()) {
+				int shortLength = this.transformer.shortLength();
+				StringBuilder target = shortLength == 0 ? this.fullValue
+						: shortLength == syllableCount ? this.shortValue : this.mixedValue;
+				append(target, this.transformer);
+				append(this.allValue, this.transformer);
+			}
+			return true;
+		}
+
+		private void append(StringBuilder value, PinyinTermTransformer transformer) {
+			if (value.length() > 0) {
+				value.append(' ');
+			}
+			value.append(transformer.buffer(), transformer.offset(), transformer.length());
+		}
+
+		private void addValue(SolrInputDocument doc, String field, StringBuilder value) {
+			if (field != null && value.length() > 0) {
+				doc.addField(field, value.toString());
+			}
+		}
+	}
+}
@@ -0,0 +1,618 @@
+package org.easy.search.analysis;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * 词元拼音组合。
+ * <p>
+ * 以音节编号记录词元中每个汉字的读音，并按简拼长度（从左边开始取首字母的汉字个数）枚举拼音组合：
+ * 简拼长度为0时为全拼，等于汉字个数时为简拼，介于两者之间时为混合拼音。
+ * 每个汉字的全拼读音按音节去重，简拼读音按首字母去重，因此枚举结果无需再用集合去重。
+ * <p>
+ * 组合不预先生成：以每个汉字所选读音的序号作为计数器，按读音序号之和（总排名）从小到大枚举，
+ * 总排名相同时后面的汉字先换读音，因此有个数限制时保留的是各字读音都较常用的组合。
+ * 由{@link #write(CharTermAttribute)}直接从共享的音节拼写写入词元，内存占用只与汉字个数有关。
+ * <p>
+ * 非线程安全，每个过滤器实例持有一个。
+ */
+final class PinyinVariants {
+
+	private final PinyinCharTable table;
+
+	/**
+	 * 模糊音规则，可为null
+	 */
+	private final PinyinFuzzyRules fuzzy;
+
+	/**
+	 * 每个汉字最多保留的读音个数，0为不限制
+	 */
+	private final int maxReadings;
+
+	/**
+	 * 汉字个数
+	 */
+	private int size;
+
+	/**
+	 * 每个汉字全拼读音在{@link #fullIds}中的起始位置
+	 */
+	private int[] fullStart = new int[8];
+
+	/**
+	 * 全拼读音音节编号
+	 */
+	private int[] fullIds = new int[8];
+
+	/**
+	 * 每个汉字简拼读音在{@link #shortIds}中的起始位置
+	 */
+	private int[] shortStart = new int[8];
+
+	/**
+	 * 简拼读音音节编号，每个首字母保留一个代表音节
+	 */
+	private int[] shortIds = new int[8];
+
+	/**
+	 * 简拼读音的首字母本身是否为该汉字的一个全拼读音（如“a”、“e”）
+	 */
+	private boolean[] shortIsFull = new boolean[8];
+
+	/**
+	 * 枚举计数器，每个汉字当前所选读音的序号
+	 */
+	private int[] digits = new int[8];
+
+	/**
+	 * 当前组合的读音序号之和
+	 */
+	private int rank;
+
+	/**
+	 * 当前简拼长度下读音序号之和的最大值
+	 */
+	private int maxRank;
+
+	/**
+	 * 待枚举的组合分组，每组为一段连续的简拼长度，共用一个个数限制
+	 */
+	private final int[] groupFrom = new int[3];
+
+	private final int[] groupTo = new int[3];
+
+	/**
+	 * 分组个数
+	 */
+	private int groupCount;
+
+	/**
+	 * 当前分组
+	 */
+	private int group;
+
+	/**
+	 * 当前简拼长度，-1表示当前分组尚未开始
+	 */
+	private int shortLength;
+
+	/**
+	 * 当前分组已输出的组合个数
+	 */
+	private int emitted;
+
+	/**
+	 * 每组最多输出的组合个数
+	 */
+	private int maxVariants = Integer.MAX_VALUE;
+
+	/**
+	 * 读音或组合是否因数量限制被截断
+	 */
+	private boolean truncated;
+
+	/**
+	 * 编码时的音节编码缓冲区
+	 */
+	private int[] codes = new int[8];
+
+	PinyinVariants(PinyinCharTable table) {
+		this(table, 0, 0);
+	}
+
+	/**
+	 *
+	 * @param table
+	 *            拼音查找表
+	 * @param maxReadings
+	 *            每个汉字最多保留的读音个数，按常用程度保留，0为不限制
+	 * @param maxVariants
+	 *            每组最多输出的组合个数，读音序号之和小（各字都较常用）的组合优先，0为不限制
+	 */
+	PinyinVariants(PinyinCharTable table, int maxReadings, int maxVariants) {
+		this(table, maxReadings, maxVariants, null);
+	}
+
+	/**
+	 *
+	 * @param table
+	 *            拼音查找表
+	 * @param maxReadings
+	 *            每个汉字最多保留的读音个数，按常用程度保留，0为不限制
+	 * @param maxVariants
+	 *            每组最多输出的组合个数，读音序号之和小（各字都较常用）的组合优先，0为不限制
+	 * @param fuzzy
+	 *            模糊音规则，读音加入时即归并为规范音节，归并后相同的读音只保留一个，可为null
+	 */
+	PinyinVariants(PinyinCharTable table, int maxReadings, int maxVariants, PinyinFuzzyRules fuzzy) {
+		this.table = table;
+		this.fuzzy = fuzzy;
+		this.maxReadings = maxReadings;
+		this.maxVariants = maxVariants > 0 ? maxVariants : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * 清空读音及已枚举的组合
+	 */
+	void reset() {
+		this.size = 0;
+		this.groupCount = 0;
+		this.group = 0;
+		this.shortLength = -1;
+		this.truncated = false;
+	}
+
+	/**
+	 *
+	 * @return 自上次{@link #reset()}以来，读音或组合是否因数量限制被截断
+	 */
+	boolean isTruncated() {
+		return this.truncated;
+	}
+
+	/**
+	 *
+	 * @return 有读音的汉字个数
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            汉字序号
+	 * @return 该汉字的全拼读音个数
+	 */
+	int fullCount(int i) {
+		return this.fullStart[i + 1] - this.fullStart[i];
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            汉字序号
+	 * @param j
+	 *            读音序号
+	 * @return 该汉字第j个全拼读音的拼写
+	 */
+	char[] fullSyllable(int i, int j) {
+		return spelling(this.fullIds[this.fullStart[i] + j]);
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            汉字序号
+	 * @param j
+	 *            读音序号
+	 * @return 该汉字第j个全拼读音的{@link PinyinSyllableCodec}编码
+	 */
+	int fullCode(int i, int j) {
+		return PinyinSyllableCodec.fullCode(this.fullIds[this.fullStart[i] + j]);
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            汉字序号
+	 * @return 该汉字的简拼读音（首字母）个数
+	 */
+	int shortCount(int i) {
+		return this.shortStart[i + 1] - this.shortStart[i];
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            汉字序号
+	 * @param j
+	 *            简拼读音序号
+	 * @return 该汉字第j个简拼读音的首字母
+	 */
+	char shortInitial(int i, int j) {
+		return spelling(this.shortIds[this.shortStart[i] + j])[0];
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            汉字序号
+	 * @param j
+	 *            简拼读音序号
+	 * @return 该汉字第j个简拼读音的{@link PinyinSyllableCodec}编码
+	 */
+	int shortCode(int i, int j) {
+		return PinyinSyllableCodec.initialCode(shortInitial(i, j));
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            汉字序号
+	 * @param j
+	 *            简拼读音序号
+	 * @return 该首字母本身是否为该汉字的一个全拼读音
+	 */
+	boolean isShortFull(int i, int j) {
+		return this.shortIsFull[this.shortStart[i] + j];
+	}
+
+	/**
+	 * 追加一个字符的读音，无读音的字符忽略
+	 *
+	 * @param codePoint
+	 *            字符码点
+	 * @return 有读音时返回true
+	 */
+	boolean addChar(int codePoint) {
+		int readingCount = this.table.getReadingCount(codePoint);
+		if (readingCount == 0) {
+			return false;
+		}
+		if (this.maxReadings > 0 && readingCount > this.maxReadings) {
+			readingCount = this.maxReadings;
+			this.truncated = true;
+		}
+		int fullEnd = beginPosition(readingCount);
+		int fullFrom = fullEnd;
+		for (int i = 0; i < readingCount; i++) {
+			int id = this.table.getReading(codePoint, i);
+			if (this.fuzzy != null) {
+				id = this.fuzzy.canonicalId(id);
+				if (contains(this.fullIds, fullFrom, fullEnd, id)) {
+					continue;
+				}
+			}
+			this.fullIds[fullEnd++] = id;
+		}
+		endPosition(fullEnd);
+		return true;
+	}
+
+	private static boolean contains(int[] ids, int from, int to, int id) {
+		for (int i = from; i < to; i++) {
+			if (ids[i] == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param id
+	 *            音节编号
+	 * @return 音节拼写，有模糊音规则时为规范拼写
+	 */
+	private char[] spelling(int id) {
+		return this.fuzzy != null ? this.fuzzy.spelling(id) : this.table.getSyllable(id);
+	}
+
+	/**
+	 * 追加一个已确定读音的字（如词典中的词语）
+	 *
+	 * @param id
+	 *            读音音节编号
+	 */
+	void addSyllable(int id) {
+		int fullEnd = beginPosition(1);
+		this.fullIds[fullEnd++] = this.fuzzy != null ? this.fuzzy.canonicalId(id) : id;
+		endPosition(fullEnd);
+	}
+
+	/**
+	 * 为新增的字准备空间
+	 *
+	 * @return 新增字的全拼读音起始位置
+	 */
+	private int beginPosition(int readingCount) {
+		int fullEnd = this.size == 0 ? 0 : this.fullStart[this.size];
+		int shortEnd = this.size == 0 ? 0 : this.shortStart[this.size];
+		this.fullStart = ArrayUtil.grow(this.fullStart, this.size + 2);
+		this.shortStart = ArrayUtil.grow(this.shortStart, this.size + 2);
+		this.fullIds = ArrayUtil.grow(this.fullIds, fullEnd + readingCount);
+		this.shortIds = ArrayUtil.grow(this.shortIds, shortEnd + readingCount);
+		this.shortIsFull = ArrayUtil.grow(this.shortIsFull, shortEnd + readingCount);
+		this.fullStart[this.size] = fullEnd;
+		this.shortStart[this.size] = shortEnd;
+		return fullEnd;
+	}
+
+	/**
+	 * 根据新增字的全拼读音生成简拼读音
+	 *
+	 * @param fullEnd
+	 *            新增字的全拼读音结束位置
+	 */
+	private void endPosition(int fullEnd) {
+		int fullFrom = this.fullStart[this.size];
+		int shortFrom = this.shortStart[this.size];
+		int shortEnd = shortFrom;
+		for (int i = fullFrom; i < fullEnd; i++) {
+			int id = this.fullIds[i];
+			char initial = spelling(id)[0];
+			boolean found = false;
+			for (int j = shortFrom; j < shortEnd; j++) {
+				if (spelling(this.shortIds[j])[0] == initial) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				this.shortIds[shortEnd++] = id;
+			}
+		}
+		// 单字母音节的简拼与全拼相同
+		for (int j = shortFrom; j < shortEnd; j++) {
+			char initial = spelling(this.shortIds[j])[0];
+			boolean same = false;
+			for (int k = fullFrom; k < fullEnd; k++) {
+				char[] syllable = spelling(this.fullIds[k]);
+				if (syllable.length == 1 && syllable[0] == initial) {
+					same = true;
+					break;
+				}
+			}
+			this.shortIsFull[j] = same;
+		}
+
+		this.size++;
+		this.fullStart[this.size] = fullEnd;
+		this.shortStart[this.size] = shortEnd;
+	}
+
+	/**
+	 * 追加一组待枚举的组合，组内按简拼长度从小到大枚举，共用一个个数限制
+	 *
+	 * @param fromShortLength
+	 *            起始简拼长度，0为全拼，{@link #size()}为简拼
+	 * @param toShortLength
+	 *            结束简拼长度（含）
+	 */
+	void addVariants(int fromShortLength, int toShortLength) {
+		if (this.size == 0 || fromShortLength > toShortLength) {
+			return;
+		}
+		this.groupFrom[this.groupCount] = fromShortLength;
+		this.groupTo[this.groupCount] = toShortLength;
+		this.groupCount++;
+	}
+
+	/**
+	 * 移动到下一个拼音组合
+	 *
+	 * @return 还有组合时返回true
+	 */
+	boolean next() {
+		while (this.group < this.groupCount) {
+			if (this.shortLength < 0) {
+				// 开始新的分组
+				this.shortLength = this.groupFrom[this.group];
+				this.emitted = 0;
+				clearDigits();
+			} else if (!increment()) {
+				// 当前简拼长度已枚举完
+				if (++this.shortLength > this.groupTo[this.group]) {
+					nextGroup();
+					continue;
+				}
+				clearDigits();
+			}
+			if (isDuplicate()) {
+				continue;
+			}
+			if (this.emitted == this.maxVariants) {
+				this.truncated = true;
+				nextGroup();
+				continue;
+			}
+			this.emitted++;
+			return true;
+		}
+		return false;
+	}
+
+	private void nextGroup() {
+		this.group++;
+		this.shortLength = -1;
+	}
+
+	private void clearDigits() {
+		this.digits = ArrayUtil.grow(this.digits, this.size);
+		this.rank = 0;
+		this.maxRank = 0;
+		for (int i = 0; i < this.size; i++) {
+			this.digits[i] = 0;
+			this.maxRank += radix(i) - 1;
+		}
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            汉字序号
+	 * @return 当前简拼长度下该汉字的读音个数
+	 */
+	private int radix(int i) {
+		return i < this.shortLength ? this.shortStart[i + 1] - this.shortStart[i]
+				: this.fullStart[i + 1] - this.fullStart[i];
+	}
+
+	/**
+	 * 移动到读音序号之和相同、按字典序的下一个组合，没有时移动到序号之和加1的第一个组合
+	 *
+	 * @return 全部枚举完时返回false
+	 */
+	private boolean increment() {
+		// 从右向左找可以加1、且右边还有序号可减的位置
+		int suffix = 0;
+		for (int i = this.size - 1; i >= 0; i--) {
+			if (suffix > 0 && this.digits[i] + 1 < radix(i)) {
+				this.digits[i]++;
+				fillSuffix(i + 1, suffix - 1);
+				return true;
+			}
+			suffix += this.digits[i];
+		}
+		if (++this.rank > this.maxRank) {
+			return false;
+		}
+		fillSuffix(0, this.rank);
+		return true;
+	}
+
+	/**
+	 * 以序号之和为sum的字典序最小组合填充从from开始的各汉字，序号尽量集中在后面的汉字
+	 */
+	private void fillSuffix(int from, int sum) {
+		for (int i = this.size - 1; i >= from; i--) {
+			int digit = Math.min(radix(i) - 1, sum);
+			this.digits[i] = digit;
+			sum -= digit;
+		}
+	}
+
+	/**
+	 * 混合拼音中，若最后一个简拼字母本身就是全拼读音，则与简拼长度减1时的组合相同
+	 */
+	private boolean isDuplicate() {
+		int last = this.shortLength - 1;
+		return last > 0 && this.shortLength < this.size
+				&& this.shortIsFull[this.shortStart[last] + this.digits[last]];
+	}
+
+	/**
+	 *
+	 * @param i
+	 *            汉字序号
+	 * @return 当前组合中该汉字所选读音的音节编号
+	 */
+	private int currentId(int i) {
+		return i < this.shortLength ? this.shortIds[this.shortStart[i] + this.digits[i]]
+				: this.fullIds[this.fullStart[i] + this.digits[i]];
+	}
+
+	/**
+	 *
+	 * @return 当前拼音组合的简拼长度，0为全拼，等于{@link #size()}为简拼，介于两者之间为混合拼音
+	 */
+	int shortLength() {
+		return this.shortLength;
+	}
+
+	/**
+	 *
+	 * @return 当前拼音组合的字符数
+	 */
+	int length() {
+		int length = this.shortLength;
+		for (int i = this.shortLength; i < this.size; i++) {
+			length += spelling(currentId(i)).length;
+		}
+		return length;
+	}
+
+	/**
+	 * 当前拼音组合中每个音节的结束位置，简拼部分每个首字母为一个音节
+	 *
+	 * @param ends
+	 *            结束位置，容量不小于{@link #size()}
+	 * @param offset
+	 *            写入位置
+	 * @return 音节个数
+	 */
+	int syllableEnds(int[] ends, int offset) {
+		int end = 0;
+		for (int i = 0; i < this.size; i++) {
+			end += i < this.shortLength ? 1 : spelling(currentId(i)).length;
+			ends[offset + i] = end;
+		}
+		return this.size;
+	}
+
+	/**
+	 * 将当前拼音组合写入缓冲区
+	 *
+	 * @param buffer
+	 *            缓冲区，容量不小于{@link #length()}
+	 * @param offset
+	 *            写入位置
+	 * @return 写入的字符数
+	 */
+	int write(char[] buffer, int offset) {
+		int pos = offset;
+		for (int i = 0; i < this.size; i++) {
+			char[] syllable = spelling(currentId(i));
+			if (i < this.shortLength) {
+				buffer[pos++] = syllable[0];
+			} else {
+				System.arraycopy(syllable, 0, buffer, pos, syllable.length);
+				pos += syllable.length;
+			}
+		}
+		return pos - offset;
+	}
+
+	/**
+	 *
+	 * @return 当前拼音组合以{@link PinyinSyllableCodec}编码后的字符数
+	 */
+	int encodedLength() {
+		return PinyinSyllableCodec.encodedLength(this.size);
+	}
+
+	/**
+	 * 将当前拼音组合以{@link PinyinSyllableCodec}编码写入缓冲区
+	 *
+	 * @param buffer
+	 *            缓冲区，容量不小于{@link #encodedLength()}
+	 * @param offset
+	 *            写入位置
+	 * @return 写入的字符数
+	 */
+	int writeEncoded(char[] buffer, int offset) {
+		if (this.codes.length < this.size) {
+			this.codes = new int[ArrayUtil.oversize(this.size, Integer.BYTES)];
+		}
+		for (int i = 0; i < this.size; i++) {
+			int id = currentId(i);
+			this.codes[i] = i < this.shortLength ? PinyinSyllableCodec.initialCode(spelling(id)[0])
+					: PinyinSyllableCodec.fullCode(id);
+		}
+		return PinyinSyllableCodec.encode(this.codes, this.size, buffer, offset);
+	}
+
+	/**
+	 * 将当前拼音组合写入词元
+	 *
+	 * @param termAtt
+	 *            词元属性
+	 */
+	void write(CharTermAttribute termAtt) {
+		int length = length();
+		write(termAtt.resizeBuffer(length), 0);
+		termAtt.setLength(length);
+	}
+}
@@ -0,0 +1,30 @@
+package org.easy.search.analysis;
+
+/**
+ * 词语拼音词典，为多音字词语指定正确读音，例如“银行 yin hang”、“重庆 chong qing”。
+ * <p>
+ * 实现必须是不可变的，可被多个线程同时使用。
+ */
+public interface PinyinWordDictionary {
+
+	/**
+	 * 从指定位置开始查找词典中最长的词语
+	 *
+	 * @param buffer
+	 *            文本
+	 * @param offset
+	 *            起始位置
+	 * @param length
+	 *            可匹配的最大字符数
+	 * @param ids
+	 *            匹配成功时写入词语每个字的读音音节编号（{@link PinyinCharTable}），长度不小于length
+	 * @return 匹配的字符数，无匹配时返回0
+	 */
+	int match(char[] buffer, int offset, int length, int[] ids);
+
+	/**
+	 *
+	 * @return 词语个数
+	 */
+	int size();
+}
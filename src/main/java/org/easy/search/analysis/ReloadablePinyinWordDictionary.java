@@ -0,0 +1,261 @@
+package org.easy.search.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.solr.core.SolrResourceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 可重新加载的词语拼音词典。
+ * <p>
+ * 持有当前词典的不可变快照，重新加载时在调用线程（或后台检查线程）中构建新词典，再以一次volatile写入替换快照，
+ * 同时清空转换结果缓存。正在使用的词元流不加锁：{@link PinyinTermTransformer}每个词元取一次快照，
+ * 替换前开始的词元仍使用旧词典完成转换，缓存结果记录所用快照，替换后旧快照的结果不再命中。
+ * <p>
+ * 可按固定间隔检查词典文件内容（CRC32），变化时重新加载，检查任务不阻止工厂被回收。词典文件都是本地文件时，
+ * 先比较文件大小和修改时间，两者都未变化时不读取文件内容。检查失败时记录警告日志并保留原词典。线程安全。
+ */
+final class ReloadablePinyinWordDictionary implements PinyinWordDictionary {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReloadablePinyinWordDictionary.class);
+
+	/**
+	 * 全局共享的后台检查线程
+	 */
+	private static final class Scheduler {
+		private static final ScheduledExecutorService INSTANCE = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "pinyin-dict-reload");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	private final ResourceLoader loader;
+
+	private final String dictFiles;
+
+	private final String dictFormat;
+
+	/**
+	 * 替换词典时清空的转换结果缓存，可为null
+	 */
+	private final PinyinExpansionCache cache;
+
+	/**
+	 * 当前词典
+	 */
+	private volatile PinyinWordDictionary current;
+
+	/**
+	 * 当前词典文件内容的校验和
+	 */
+	private long checksum;
+
+	/**
+	 * 计算校验和时词典文件的大小和修改时间，有文件不在本地时为null
+	 */
+	private long[] stamp;
+
+	/**
+	 * 重新加载次数
+	 */
+	private volatile long reloadCount;
+
+	/**
+	 *
+	 * @param loader
+	 *            资源加载器
+	 * @param dictFiles
+	 *            词典文件，多个文件以逗号分隔
+	 * @param dictFormat
+	 *            词典格式
+	 * @param cache
+	 *            替换词典时清空的转换结果缓存，可为null
+	 * @throws IOException
+	 *             读取失败
+	 */
+	ReloadablePinyinWordDictionary(ResourceLoader loader, String dictFiles, String dictFormat,
+			PinyinExpansionCache cache) throws IOException {
+		this.loader = loader;
+		this.dictFiles = dictFiles;
+		this.dictFormat = dictFormat;
+		this.cache = cache;
+		this.stamp = stamp();
+		this.checksum = checksum();
+		this.current = PinyinTransformTokenFilterFactory.loadDictionary(loader, dictFiles, dictFormat);
+	}
+
+	/**
+	 *
+	 * @return 当前词典快照，同一词元的转换应只使用一个快照
+	 */
+	PinyinWordDictionary get() {
+		return this.current;
+	}
+
+	@Override
+	public int match(char[] buffer, int offset, int length, int[] ids) {
+		return this.current.match(buffer, offset, length, ids);
+	}
+
+	@Override
+	public int size() {
+		return this.current.size();
+	}
+
+	/**
+	 *
+	 * @return 重新加载次数
+	 */
+	long getReloadCount() {
+		return this.reloadCount;
+	}
+
+	/**
+	 * 重新加载词典并替换当前快照，加载失败时保留原词典
+	 *
+	 * @param force
+	 *            为false时只在文件内容变化时加载
+	 * @return 是否替换了词典
+	 * @throws IOException
+	 *             读取失败或格式错误
+	 */
+	synchronized boolean reload(boolean force) throws IOException {
+		long[] stamp = stamp();
+		if (!force && stamp != null && Arrays.equals(stamp, this.stamp)) {
+			return false;
+		}
+		long checksum = checksum();
+		if (!force && checksum == this.checksum) {
+			// 只有修改时间变化
+			this.stamp = stamp;
+			return false;
+		}
+		PinyinWordDictionary dictionary = PinyinTransformTokenFilterFactory.loadDictionary(this.loader,
+				this.dictFiles, this.dictFormat);
+		this.current = dictionary;
+		this.checksum = checksum;
+		this.stamp = stamp;
+		if (this.cache != null) {
+			this.cache.clear();
+		}
+		this.reloadCount++;
+		return true;
+	}
+
+	/**
+	 * 按固定间隔检查词典文件，内容变化时重新加载
+	 *
+	 * @param intervalSeconds
+	 *            检查间隔（秒）
+	 */
+	void watch(long intervalSeconds) {
+		WatchTask task = new WatchTask(this);
+		task.future = Scheduler.INSTANCE.scheduleWithFixedDelay(task, intervalSeconds, intervalSeconds,
+				TimeUnit.SECONDS);
+	}
+
+	/**
+	 *
+	 * @return 全部词典文件内容的校验和
+	 */
+	private long checksum() throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[8192];
+		for (String file : PinyinTransformTokenFilterFactory.splitDictFiles(this.dictFiles)) {
+			try (InputStream in = this.loader.openResource(file.trim())) {
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					crc.update(buffer, 0, read);
+				}
+			}
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 *
+	 * @return 全部词典文件的大小和修改时间，有文件不在本地时返回null
+	 */
+	private long[] stamp() throws IOException {
+		List<String> files = PinyinTransformTokenFilterFactory.splitDictFiles(this.dictFiles);
+		long[] stamp = new long[files.size() * 2];
+		for (int i = 0; i < files.size(); i++) {
+			Path path = localPath(files.get(i).trim());
+			if (path == null) {
+				return null;
+			}
+			stamp[2 * i] = Files.size(path);
+			stamp[2 * i + 1] = Files.getLastModifiedTime(path).toMillis();
+		}
+		return stamp;
+	}
+
+	/**
+	 *
+	 * @return 词典文件的本地路径，不是本地文件（如在classpath或ZooKeeper中）时返回null
+	 */
+	private Path localPath(String file) {
+		Path path = Paths.get(file);
+		if (!path.isAbsolute() && this.loader instanceof SolrResourceLoader) {
+			try {
+				path = Paths.get(((SolrResourceLoader) this.loader).getConfigDir()).resolve(file);
+			} catch (RuntimeException e) {
+				// ZooKeeper中的配置没有本地目录
+				return null;
+			}
+		}
+		return path.isAbsolute() && Files.isRegularFile(path) ? path : null;
+	}
+
+	/**
+	 * 检查任务，只弱引用词典，词典被回收后取消
+	 */
+	private static final class WatchTask implements Runnable {
+
+		private final WeakReference<ReloadablePinyinWordDictionary> dictionary;
+
+		volatile ScheduledFuture<?> future;
+
+		WatchTask(ReloadablePinyinWordDictionary dictionary) {
+			this.dictionary = new WeakReference<ReloadablePinyinWordDictionary>(dictionary);
+		}
+
+		@Override
+		public void run() {
+			ReloadablePinyinWordDictionary dictionary = this.dictionary.get();
+			if (dictionary == null) {
+				ScheduledFuture<?> future = this.future;
+				if (future != null) {
+					future.cancel(false);
+				}
+				return;
+			}
+			try {
+				dictionary.reload(false);
+			} catch (IOException | RuntimeException e) {
+				// 文件正在写入或格式错误时保留原词典，下次检查时重试
+				LOG.warn("Failed to reload pinyin dictionary " + dictionary.dictFiles + ", keeping the current one", e);
+			}
+		}
+	}
+}
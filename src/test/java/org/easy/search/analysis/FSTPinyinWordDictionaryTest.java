@@ -0,0 +1,64 @@
+package org.easy.search.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FSTPinyinWordDictionaryTest {
+
+	private static final List<String> LINES = Arrays.asList("# 注释", "银行 yin hang", "银行卡 yin hang ka",
+			"重庆 chong qing", "长 chang", "长江 chang jiang", "绿色 lv se");
+
+	@Test
+	public void testSameAsMap() throws IOException {
+		PinyinWordDictionary map = MapPinyinWordDictionary.parse(LINES);
+		PinyinWordDictionary fst = FSTPinyinWordDictionary.compile(LINES);
+		assertEquals(map.size(), fst.size());
+		for (String text : Arrays.asList("银行卡号", "银行", "银", "重庆长江", "长城", "绿色", "天气")) {
+			for (int offset = 0; offset < text.length(); offset++) {
+				assertMatch(map, fst, text, offset);
+			}
+		}
+	}
+
+	@Test
+	public void testSaveAndOpen() throws IOException {
+		PinyinWordDictionary map = MapPinyinWordDictionary.parse(LINES);
+		Path dir = Files.createTempDirectory("pinyin");
+		Path file = dir.resolve("dict.fst");
+		try {
+			FSTPinyinWordDictionary.compile(LINES).save(file);
+
+			FSTPinyinWordDictionary opened = FSTPinyinWordDictionary.open(file);
+			assertSame(opened, FSTPinyinWordDictionary.open(file));
+			assertMatch(map, opened, "银行卡号", 0);
+			assertMatch(map, opened, "重庆长江", 2);
+
+			try (InputStream in = Files.newInputStream(file)) {
+				assertMatch(map, FSTPinyinWordDictionary.load(in), "重庆长江", 0);
+			}
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(dir);
+		}
+	}
+
+	private static void assertMatch(PinyinWordDictionary expected, PinyinWordDictionary actual, String text,
+			int offset) {
+		char[] buffer = text.toCharArray();
+		int[] expectedIds = new int[buffer.length];
+		int[] actualIds = new int[buffer.length];
+		int matched = expected.match(buffer, offset, buffer.length - offset, expectedIds);
+		assertEquals(text + "@" + offset, matched, actual.match(buffer, offset, buffer.length - offset, actualIds));
+		assertArrayEquals(text + "@" + offset, Arrays.copyOf(expectedIds, matched), Arrays.copyOf(actualIds, matched));
+	}
+}
@@ -0,0 +1,104 @@
+package org.easy.search.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.easy.search.analysis.PinyinTransformTokenFilter.OutputFormat;
+import org.junit.Test;
+
+public class PinyinBatchConverterTest {
+
+	@Test
+	public void testConvertBatch() {
+		PinyinBatchConverter converter = new PinyinBatchConverter(
+				new PinyinTransformOptions().setOutputFormat(OutputFormat.BOTH).setMinTermLength(1));
+		StringBuilder out = new StringBuilder();
+		int[] ends = new int[3];
+		int[] counts = new int[3];
+		converter.convert(Arrays.asList("中国", "hello", new StringBuilder("人民")), out, ',', ends, counts);
+		assertEquals("zg,zhongguorm,renmin", out.toString());
+		assertArrayEquals(new int[] { 11, 11, 20 }, ends);
+		assertArrayEquals(new int[] { 2, 0, 2 }, counts);
+	}
+
+	@Test
+	public void testConvertFile() throws IOException {
+		Path dir = Files.createTempDirectory("pinyin_batch");
+		Path input = dir.resolve("input.txt");
+		Path output = dir.resolve("output.txt");
+		try {
+			List<String> lines = new ArrayList<String>();
+			for (int i = 0; i < 10000; i++) {
+				lines.add(i % 2 == 0 ? "中国" + i : "人民");
+			}
+			Files.write(input, lines, StandardCharsets.UTF_8);
+			long[] stats = PinyinBatchConverter.convertFile(input, output, OutputFormat.FULL, 4);
+			assertEquals(10000, stats[0]);
+			assertEquals(Files.size(input), stats[1]);
+			List<String> result = Files.readAllLines(output, StandardCharsets.UTF_8);
+			assertEquals(10000, result.size());
+			// 输出顺序与输入相同
+			assertEquals("中国0\tzhongguo", result.get(0));
+			assertEquals("人民\trenmin", result.get(9999));
+			assertEquals("中国9998\tzhongguo", result.get(9998));
+		} finally {
+			Files.deleteIfExists(input);
+			Files.deleteIfExists(output);
+			Files.deleteIfExists(dir);
+		}
+	}
+
+	@Test
+	public void testConvertFileAcrossChunks() throws IOException {
+		Path dir = Files.createTempDirectory("pinyin_batch");
+		Path input = dir.resolve("input.txt");
+		Path output = dir.resolve("output.txt");
+		try {
+			// 行长1到25字节，块大小7字节，映射大小32字节，行跨越块和映射的边界，最后一行没有换行符
+			String[] records = { "", "中国", "人民银行中国", "a", "中", "hello中国人民\r", "重庆长江大桥北" };
+			StringBuilder text = new StringBuilder();
+			List<String> expected = new ArrayList<String>();
+			PinyinBatchConverter converter = new PinyinBatchConverter(
+					new PinyinTransformOptions().setOutputFormat(OutputFormat.FULL));
+			for (int i = 0; i < 200; i++) {
+				String record = records[i % records.length];
+				text.append(record);
+				if (i < 199) {
+					text.append('\n');
+				}
+				StringBuilder line = new StringBuilder(record.replace("\r", "")).append('\t');
+				converter.convert(record.replace("\r", ""), line, ' ');
+				expected.add(line.toString());
+			}
+			Files.write(input, text.toString().getBytes(StandardCharsets.UTF_8));
+			long[] stats = PinyinBatchConverter.convertFile(input, output, OutputFormat.FULL, 3, 7, 32);
+			assertEquals(200, stats[0]);
+			assertEquals(Files.size(input), stats[1]);
+			assertEquals(expected, Files.readAllLines(output, StandardCharsets.UTF_8));
+			// 单个汉字不转换
+			assertEquals("中\t", expected.get(4));
+
+			// 一行超过映射大小
+			Files.write(input, "中国人民银行中国人民银行\n".getBytes(StandardCharsets.UTF_8));
+			try {
+				PinyinBatchConverter.convertFile(input, output, OutputFormat.FULL, 1, 7, 32);
+				fail();
+			} catch (IOException e) {
+				// expected
+			}
+		} finally {
+			Files.deleteIfExists(input);
+			Files.deleteIfExists(output);
+			Files.deleteIfExists(dir);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package org.easy.search.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.junit.Test;
+
+public class PinyinCharFilterFactoryTest {
+
+	@Test
+	public void testTransliterate() throws IOException {
+		PinyinCharFilterFactory factory = new PinyinCharFilterFactory(new HashMap<String, String>());
+		assertEquals("zhong guo ren hello ren 😀 min , 1", text(factory, "中国人hello人😀民, 1"));
+		// 词元/起始偏移/结束偏移，偏移对应原文
+		assertEquals(Arrays.asList("zhong/0/1", "guo/1/2", "ren/2/3", "hello/3/8", "ren/8/9", "😀/9/11",
+				"min/11/12", ",/12/13", "1/14/15"), tokens(factory, "中国人hello人😀民, 1"));
+	}
+
+	@Test
+	public void testEmptySeparator() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("separator", "");
+		PinyinCharFilterFactory factory = new PinyinCharFilterFactory(params);
+		assertEquals(Arrays.asList("zhongguoren/0/3", "renmin/4/6"), tokens(factory, "中国人 人民"));
+	}
+
+	@Test
+	public void testAcrossBuffers() throws IOException {
+		PinyinCharFilterFactory factory = new PinyinCharFilterFactory(new HashMap<String, String>());
+		StringBuilder text = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < PinyinCharFilter.BUFFER_SIZE; i++) {
+			text.append("a中国人");
+			expected.append(i > 0 ? " a zhong guo ren" : "a zhong guo ren");
+		}
+		assertEquals(expected.toString(), text(factory, text.toString()));
+		List<String> tokens = tokens(factory, text.toString());
+		assertEquals(PinyinCharFilter.BUFFER_SIZE * 4, tokens.size());
+		int last = PinyinCharFilter.BUFFER_SIZE * 4 - 1;
+		assertEquals("ren/" + last + "/" + (last + 1), tokens.get(last));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownParameter() {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("format", "short");
+		new PinyinCharFilterFactory(params);
+	}
+
+	private static String text(PinyinCharFilterFactory factory, String text) throws IOException {
+		Reader reader = factory.create(new StringReader(text));
+		StringBuilder sb = new StringBuilder();
+		// 小缓冲区以覆盖分多次读取输出
+		char[] buffer = new char[7];
+		int n;
+		while ((n = reader.read(buffer, 0, buffer.length)) >= 0) {
+			sb.append(buffer, 0, n);
+		}
+		reader.close();
+		return sb.toString();
+	}
+
+	private static List<String> tokens(PinyinCharFilterFactory factory, String text) throws IOException {
+		WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(factory.create(new StringReader(text)));
+		CharTermAttribute termAtt = tokenizer.addAttribute(CharTermAttribute.class);
+		OffsetAttribute offsetAtt = tokenizer.addAttribute(OffsetAttribute.class);
+		List<String> tokens = new ArrayList<String>();
+		tokenizer.reset();
+		while (tokenizer.incrementToken()) {
+			tokens.add(termAtt.toString() + "/" + offsetAtt.startOffset() + "/" + offsetAtt.endOffset());
+		}
+		tokenizer.end();
+		tokenizer.close();
+		return tokens;
+	}
+}
@@ -0,0 +1,53 @@
+package org.easy.search.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+
+public class PinyinCharTableTest {
+
+	@Test
+	public void testSameAsPinyin4j() throws BadHanyuPinyinOutputFormatCombination {
+		HanyuPinyinOutputFormat format = new HanyuPinyinOutputFormat();
+		format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+		format.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+
+		PinyinCharTable table = PinyinCharTable.getInstance();
+		for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+			if (Character.isSurrogate((char) c)) {
+				continue;
+			}
+			Set<String> expected = new LinkedHashSet<String>();
+			String[] array = PinyinHelper.toHanyuPinyinStringArray((char) c, format);
+			if (array != null) {
+				for (String s : array) {
+					expected.add(s);
+				}
+			}
+			Set<String> actual = new LinkedHashSet<String>();
+			for (int i = 0; i < table.getReadingCount(c); i++) {
+				actual.add(table.getSyllableString(table.getReading(c, i)));
+			}
+			assertEquals("char " + Integer.toHexString(c), expected.toString(), actual.toString());
+		}
+	}
+
+	@Test
+	public void testSyllableId() {
+		PinyinCharTable table = PinyinCharTable.getInstance();
+		for (int id = 0; id < table.getSyllableCount(); id++) {
+			assertEquals(id, table.getSyllableId(table.getSyllableString(id)));
+		}
+		assertEquals(-1, table.getSyllableId("xyz"));
+		assertEquals(0, table.getReadingCount(0x1F600));
+	}
+}
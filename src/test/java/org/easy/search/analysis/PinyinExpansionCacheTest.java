@@ -0,0 +1,69 @@
+package org.easy.search.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class PinyinExpansionCacheTest {
+
+	@Test
+	public void testGetAndPut() {
+		PinyinExpansionCache cache = new PinyinExpansionCache(16);
+		PinyinExpansionCache.Expansion expansion = new PinyinExpansionCache.Expansion("yinhangyh".toCharArray(),
+				new int[] { 7, 9 }, 2, new int[] { 3, 7, 1, 2 }, false);
+		char[] buffer = "x银行x".toCharArray();
+		assertNull(cache.get(buffer, 1, 2, null));
+		cache.put(buffer, 1, 2, expansion);
+		// 缓存键为词元副本，修改原缓冲区不影响缓存
+		buffer[1] = '重';
+		assertNull(cache.get(buffer, 1, 2, null));
+		assertSame(expansion, cache.get("银行".toCharArray(), 0, 2, null));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testStaleDictionary() {
+		PinyinExpansionCache cache = new PinyinExpansionCache(16);
+		PinyinWordDictionary dictionary = new PinyinWordDictionary() {
+			@Override
+			public int match(char[] buffer, int offset, int length, int[] ids) {
+				return 0;
+			}
+
+			@Override
+			public int size() {
+				return 0;
+			}
+		};
+		char[] term = "银行".toCharArray();
+		cache.put(term, 0, 2, new PinyinExpansionCache.Expansion("yinhang".toCharArray(), new int[] { 7 }, 2,
+				new int[] { 3, 7 }, false, dictionary));
+		assertNotNull(cache.get(term, 0, 2, dictionary));
+		// 词典重新加载后旧的结果计为未命中
+		assertNull(cache.get(term, 0, 2, null));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testEviction() {
+		PinyinExpansionCache cache = new PinyinExpansionCache(16);
+		PinyinExpansionCache.Expansion expansion = new PinyinExpansionCache.Expansion(new char[0], new int[0], 0, new int[0],
+				false);
+		for (int i = 0; i < 1000; i++) {
+			char[] term = Integer.toString(i).toCharArray();
+			cache.put(term, 0, term.length, expansion);
+		}
+		assertEquals(16, cache.size());
+		assertEquals(1000 - 16, cache.getEvictionCount());
+		char[] last = "999".toCharArray();
+		assertNotNull(cache.get(last, 0, last.length, null));
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,144 @@
+package org.easy.search.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.apache.solr.core.SolrResourceLoader;
+import org.junit.Test;
+
+public class PinyinFilterMetricsTest {
+
+	@Test
+	public void testTransformMetrics() throws IOException, JMException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputFormat", "full");
+		params.put("maxVariants", "2");
+		params.put("metricsName", "text_pinyin");
+		PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+		factory.inform(new ClasspathResourceLoader(getClass()));
+		PinyinFilterMetrics metrics = factory.getMetrics();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = metrics.getObjectName();
+		try {
+			// 中国 原词元+zhongguo，行长 原词元+2个截断后的全拼，hello 只输出原词元
+			consume(factory, "中国 行长 hello");
+			assertEquals(3, metrics.getInputTokens());
+			assertEquals(6, metrics.getEmittedTokens());
+			assertEquals(3, metrics.getMaxVariants());
+			assertEquals(1, metrics.getCappedTokens());
+			assertArrayEquals(new long[] { 0, 1, 1, 1, 0, 0, 0, 0, 0 }, metrics.getExpansionHistogram());
+
+			assertEquals("PinyinTransformTokenFilter", name.getKeyProperty("type"));
+			assertEquals("\"text_pinyin\"", name.getKeyProperty("name"));
+			assertEquals(2.0, (Double) server.getAttribute(name, "ExpansionRatio"), 0.0001);
+
+			server.invoke(name, "reset", null, null);
+			assertEquals(0, metrics.getInputTokens());
+		} finally {
+			metrics.unregister();
+		}
+		assertFalse(server.isRegistered(name));
+	}
+
+	@Test
+	public void testRegistrationLifecycle() throws IOException, JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Properties properties = new Properties();
+		properties.setProperty("solr.core.name", "collection1");
+		SolrResourceLoader loader = new SolrResourceLoader(Paths.get("."), null, properties);
+		PinyinFilterMetrics metrics = new PinyinFilterMetrics("PinyinTransformTokenFilter");
+		metrics.register("text_pinyin", loader);
+		// 名称包含core名，不随加载顺序变化
+		ObjectName name = metrics.getObjectName();
+		assertEquals(new ObjectName(
+				"org.easy.search.analysis:type=PinyinTransformTokenFilter,core=\"collection1\",name=\"text_pinyin\""),
+				name);
+		assertTrue(server.isRegistered(name));
+
+		// core重新加载时新工厂替换同名的MBean，旧工厂注销时不影响新的MBean
+		PinyinFilterMetrics reloaded = new PinyinFilterMetrics("PinyinTransformTokenFilter");
+		reloaded.register("text_pinyin", loader);
+		try {
+			assertEquals(name, reloaded.getObjectName());
+			metrics.unregister();
+			assertNull(metrics.getObjectName());
+			assertTrue(server.isRegistered(name));
+		} finally {
+			reloaded.unregister();
+			loader.close();
+		}
+		assertFalse(server.isRegistered(name));
+	}
+
+	@Test
+	public void testCollectedMetrics() throws JMException, InterruptedException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		PinyinFilterMetrics metrics = new PinyinFilterMetrics("PinyinTransformTokenFilter");
+		metrics.register("text_collected");
+		ObjectName name = metrics.getObjectName();
+		assertEquals(new ObjectName("org.easy.search.analysis:type=PinyinTransformTokenFilter,name=\"text_collected\""),
+				name);
+
+		// 工厂被回收后，下一次注册或注销时移除其MBean
+		WeakReference<PinyinFilterMetrics> ref = new WeakReference<PinyinFilterMetrics>(metrics);
+		metrics = null;
+		for (int i = 0; i < 50 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(ref.get());
+		PinyinFilterMetrics other = new PinyinFilterMetrics("PinyinTransformTokenFilter");
+		for (int i = 0; i < 50 && server.isRegistered(name); i++) {
+			other.unregister();
+			Thread.sleep(10);
+		}
+		assertFalse(server.isRegistered(name));
+	}
+
+	@Test
+	public void testNGramMetrics() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("minGram", "2");
+		params.put("maxGram", "3");
+		params.put("outputDirection", "front");
+		PinyinNGramTokenFilterFactory factory = new PinyinNGramTokenFilterFactory(params);
+		consume(factory, "zhongguo ab a");
+		PinyinFilterMetrics metrics = factory.getMetrics();
+		assertEquals(3, metrics.getInputTokens());
+		assertEquals(3, metrics.getEmittedTokens());
+		assertEquals(2, metrics.getMaxVariants());
+		assertEquals(1, metrics.getCappedTokens());
+	}
+
+	private static void consume(TokenFilterFactory factory, String text) throws IOException {
+		WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(text));
+		try (TokenStream stream = factory.create(tokenizer)) {
+			stream.reset();
+			while (stream.incrementToken()) {
+				// 只消费
+			}
+			stream.end();
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package org.easy.search.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.search.suggest.FileDictionary;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.junit.Test;
+
+public class PinyinLookupTest {
+
+	private static final String ENTRIES = "中国人\t10\n中国银行\t30\n重庆\t20\n绿色\t5\n";
+
+	@Test
+	public void testLookup() throws IOException {
+		PinyinLookup lookup = build();
+		assertEquals(4, lookup.getCount());
+		// 全拼、简拼、混合拼音及原文前缀，按权重排序，多音字的每个读音均可匹配
+		assertEquals(Arrays.asList("中国银行/30", "中国人/10"), lookup(lookup, "zhongg"));
+		assertEquals(Arrays.asList("中国银行/30", "中国人/10"), lookup(lookup, "ZG"));
+		assertEquals(Arrays.asList("中国人/10"), lookup(lookup, "zhong guo r"));
+		assertEquals(Arrays.asList("中国银行/30"), lookup(lookup, "zgyinh"));
+		assertEquals(Arrays.asList("中国银行/30", "中国人/10"), lookup(lookup, "中国"));
+		assertEquals(Arrays.asList("重庆/20"), lookup(lookup, "chongq"));
+		assertEquals(Arrays.asList("绿色/5"), lookup(lookup, "lvs"));
+		assertEquals(Arrays.asList("中国银行/30"), lookup(lookup, "z", 1));
+		assertEquals(new ArrayList<String>(), lookup(lookup, "xyz"));
+	}
+
+	@Test
+	public void testStoreAndLoad() throws IOException {
+		PinyinLookup lookup = build();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assertEquals(true, lookup.store(output));
+		PinyinLookup loaded = new PinyinLookup();
+		loaded.load(new ByteArrayInputStream(output.toByteArray()));
+		assertEquals(4, loaded.getCount());
+		assertEquals(lookup(lookup, "zg"), lookup(loaded, "zg"));
+	}
+
+	private static PinyinLookup build() throws IOException {
+		PinyinLookup lookup = new PinyinLookup();
+		lookup.build(new FileDictionary(new ByteArrayInputStream(ENTRIES.getBytes(StandardCharsets.UTF_8)))
+				.getEntryIterator());
+		return lookup;
+	}
+
+	private static List<String> lookup(PinyinLookup lookup, String key) throws IOException {
+		return lookup(lookup, key, 10);
+	}
+
+	private static List<String> lookup(PinyinLookup lookup, String key, int num) throws IOException {
+		List<String> results = new ArrayList<String>();
+		for (LookupResult result : lookup.lookup(key, false, num)) {
+			results.add(result.key + "/" + result.value);
+		}
+		return results;
+	}
+}
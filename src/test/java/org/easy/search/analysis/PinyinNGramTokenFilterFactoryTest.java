@@ -1,15 +1,22 @@
 package org.easy.search.analysis;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -47,4 +54,73 @@ public class PinyinNGramTokenFilterFactoryTest {
 		}
 
 	}
+
+	@Test
+	public void testSyllableUnit() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("maxGram", "2");
+		params.put("outputDirection", "front");
+		params.put("gramUnit", "syllable");
+		PinyinNGramTokenFilterFactory factory = new PinyinNGramTokenFilterFactory(params);
+		// 没有音节边界属性时按最长匹配切分音节
+		assertEquals(Arrays.asList("zhong", "zhongguo"), terms(factory.create(tokenizer("zhongguoren"))));
+
+		params = new HashMap<String, String>();
+		params.put("minGram", "2");
+		params.put("maxGram", "3");
+		params.put("outputDirection", "both");
+		params.put("gramUnit", "syllable");
+		params.put("partialSyllable", "true");
+		factory = new PinyinNGramTokenFilterFactory(params);
+		// 与后缀相同的前缀不再输出
+		assertEquals(Arrays.asList("guor", "guore", "guoren", "zhongg", "zhonggu", "zhongguo", "zhongguor",
+				"zhongguore", "zhongguoren"), terms(factory.create(tokenizer("zhongguoren"))));
+	}
+
+	@Test
+	public void testBothWithoutDuplicates() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputDirection", "both");
+		PinyinNGramTokenFilterFactory factory = new PinyinNGramTokenFilterFactory(params);
+		assertEquals(Arrays.asList("n", "an", "na", "nan"), terms(factory.create(tokenizer("nan"))));
+		assertEquals(Arrays.asList("b", "a", "ab", "bab", "aba", "abab"), terms(factory.create(tokenizer("abab"))));
+		// 按代码点切分，不拆开代理对
+		assertEquals(Arrays.asList("a", "\ud842\udfb7", "\ud842\udfb7a"),
+				terms(factory.create(tokenizer("\ud842\udfb7a"))));
+	}
+
+	@Test
+	public void testSyllableBoundaryFromTransform() throws IOException {
+		Map<String, String> transformParams = new HashMap<String, String>();
+		transformParams.put("outputFormat", "full");
+		transformParams.put("outOriginal", "false");
+		transformParams.put("minTerm", "1");
+		transformParams.put("maxReadings", "1");
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputDirection", "front");
+		params.put("gramUnit", "syllable");
+		PinyinNGramTokenFilterFactory factory = new PinyinNGramTokenFilterFactory(params);
+		// 西安的全拼xian由转换过滤器给出音节边界，不会按最长匹配切分为一个音节
+		TokenStream stream = factory
+				.create(new PinyinTransformTokenFilterFactory(transformParams).create(tokenizer("西安")));
+		assertEquals(Arrays.asList("xi", "xian"), terms(stream));
+	}
+
+	private static MockTokenizer tokenizer(String text) {
+		MockTokenizer tokenizer = new MockTokenizer();
+		tokenizer.setReader(new StringReader(text));
+		return tokenizer;
+	}
+
+	private static List<String> terms(TokenStream stream) throws IOException {
+		CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+		List<String> terms = new ArrayList<String>();
+		stream.reset();
+		while (stream.incrementToken()) {
+			terms.add(termAtt.toString());
+		}
+		stream.end();
+		stream.close();
+		return terms;
+	}
 }
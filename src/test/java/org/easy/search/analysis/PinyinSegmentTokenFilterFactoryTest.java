@@ -0,0 +1,122 @@
+package org.easy.search.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.junit.Test;
+
+public class PinyinSegmentTokenFilterFactoryTest {
+
+	@Test
+	public void testBestSegmentation() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("maxSegmentations", "1");
+		params.put("outOriginal", "false");
+		PinyinSegmentTokenFilterFactory factory = new PinyinSegmentTokenFilterFactory(params);
+		// 词元/位置增量/位置长度
+		assertEquals(Arrays.asList("zhong/1/1", "guo/1/1", "ren/1/1", "z/1/1", "g/1/1", "r/1/1", "lu:/1/1",
+				"se/1/1", "中国/1/1", "x1/1/1"), tokens(factory, "ZhongGuoRen zgr lvse 中国 x1"));
+	}
+
+	@Test
+	public void testAlternatives() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("maxSegmentations", "2");
+		PinyinSegmentTokenFilterFactory factory = new PinyinSegmentTokenFilterFactory(params);
+		// xian优先，其次xi an，原词元与xian相同不重复输出
+		assertEquals(Arrays.asList("xian/1/2", "xi/0/1", "an/1/1", "shi/1/1"), tokens(factory, "xian shi"));
+		// 两种切分代价相同时按出现顺序
+		assertEquals(Arrays.asList("fangan/1/3", "fan/0/1", "fang/0/2", "gan/1/2", "an/1/1"),
+				tokens(factory, "fangan"));
+	}
+
+	@Test
+	public void testWithoutInitials() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("initials", "false");
+		PinyinSegmentTokenFilterFactory factory = new PinyinSegmentTokenFilterFactory(params);
+		assertEquals(Arrays.asList("zgr/1/1"), tokens(factory, "zgr"));
+	}
+
+	@Test
+	public void testPhraseQuery() throws IOException {
+		final PinyinTransformTokenFilterFactory indexFactory = new PinyinTransformTokenFilterFactory(
+				new HashMap<String, String>(Collections.singletonMap("outputFormat", "syllable")));
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("initials", "false");
+		final PinyinSegmentTokenFilterFactory queryFactory = new PinyinSegmentTokenFilterFactory(params);
+		Analyzer indexAnalyzer = new Analyzer() {
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer tokenizer = new WhitespaceTokenizer();
+				return new TokenStreamComponents(tokenizer, indexFactory.create(tokenizer));
+			}
+		};
+		Analyzer queryAnalyzer = new Analyzer() {
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer tokenizer = new WhitespaceTokenizer();
+				return new TokenStreamComponents(tokenizer, queryFactory.create(tokenizer));
+			}
+		};
+		Directory directory = new RAMDirectory();
+		IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(indexAnalyzer));
+		for (String title : new String[] { "中国人", "先是" }) {
+			Document doc = new Document();
+			doc.add(new TextField("title", title, Field.Store.NO));
+			writer.addDocument(doc);
+		}
+		writer.close();
+		// 以查询解析器实际生成的查询匹配
+		QueryBuilder builder = new QueryBuilder(queryAnalyzer);
+		IndexSearcher searcher = new IndexSearcher(DirectoryReader.open(directory));
+		assertEquals(1, searcher.count(builder.createPhraseQuery("title", "zhongguoren")));
+		assertEquals(1, searcher.count(builder.createPhraseQuery("title", "xianshi")));
+		assertEquals(1, searcher.count(builder.createPhraseQuery("title", "zhong guo")));
+		assertEquals(0, searcher.count(builder.createPhraseQuery("title", "guozhong")));
+		searcher.getIndexReader().close();
+		directory.close();
+	}
+
+	private static List<String> tokens(PinyinSegmentTokenFilterFactory factory, String text) throws IOException {
+		WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(text));
+		TokenStream stream = factory.create(tokenizer);
+		CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+		PositionIncrementAttribute posIncrAtt = stream.addAttribute(PositionIncrementAttribute.class);
+		PositionLengthAttribute posLenAtt = stream.addAttribute(PositionLengthAttribute.class);
+		List<String> tokens = new ArrayList<String>();
+		stream.reset();
+		while (stream.incrementToken()) {
+			tokens.add(termAtt + "/" + posIncrAtt.getPositionIncrement() + "/" + posLenAtt.getPositionLength());
+		}
+		stream.end();
+		stream.close();
+		return tokens;
+	}
+}
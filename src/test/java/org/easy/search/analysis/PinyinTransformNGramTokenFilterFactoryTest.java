@@ -0,0 +1,79 @@
+package org.easy.search.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.junit.Test;
+
+public class PinyinTransformNGramTokenFilterFactoryTest {
+
+	private static final String TEXT = "科华万象 行长 hello 中华人民共和国 银行 a 重庆";
+
+	@Test
+	public void testSameAsChain() throws IOException {
+		for (String outputFormat : new String[] { "full", "short", "both" }) {
+			for (String outputDirection : new String[] { "front", "back", "both" }) {
+				for (String gramUnit : new String[] { "char", "syllable" }) {
+					for (String outOriginal : new String[] { "true", "false" }) {
+						Map<String, String> transformArgs = new HashMap<String, String>();
+						transformArgs.put("outputFormat", outputFormat);
+						transformArgs.put("outOriginal", outOriginal);
+						transformArgs.put("minTerm", "1");
+						transformArgs.put("mixShort", "3");
+						Map<String, String> ngramArgs = new HashMap<String, String>();
+						ngramArgs.put("minGram", "2");
+						ngramArgs.put("maxGram", "6");
+						ngramArgs.put("outputDirection", outputDirection);
+						ngramArgs.put("gramUnit", gramUnit);
+						Map<String, String> fusedArgs = new HashMap<String, String>(transformArgs);
+						fusedArgs.putAll(ngramArgs);
+						fusedArgs.put("cacheSize", "16");
+
+						PinyinTransformTokenFilterFactory transform = new PinyinTransformTokenFilterFactory(transformArgs);
+						PinyinNGramTokenFilterFactory ngram = new PinyinNGramTokenFilterFactory(ngramArgs);
+						PinyinTransformNGramTokenFilterFactory fused = new PinyinTransformNGramTokenFilterFactory(
+								fusedArgs);
+
+						Tokenizer tokenizer = new WhitespaceTokenizer();
+						List<String> expected = tokens(tokenizer, ngram.create(transform.create(tokenizer)));
+						tokenizer = new WhitespaceTokenizer();
+						TokenStream stream = fused.create(tokenizer);
+						assertEquals(fusedArgs.toString(), expected, tokens(tokenizer, stream));
+						// 第二遍命中缓存
+						assertEquals(fusedArgs.toString(), expected, tokens(tokenizer, stream));
+					}
+				}
+			}
+		}
+	}
+
+	private static List<String> tokens(Tokenizer tokenizer, TokenStream stream) throws IOException {
+		tokenizer.setReader(new StringReader(TEXT));
+		CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+		PositionIncrementAttribute posIncrAtt = stream.addAttribute(PositionIncrementAttribute.class);
+		OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+		TypeAttribute typeAtt = stream.addAttribute(TypeAttribute.class);
+		List<String> tokens = new ArrayList<String>();
+		stream.reset();
+		while (stream.incrementToken()) {
+			tokens.add(termAtt + "/" + posIncrAtt.getPositionIncrement() + "/" + offsetAtt.startOffset() + "-"
+					+ offsetAtt.endOffset() + "/" + typeAtt.type());
+		}
+		stream.end();
+		stream.close();
+		return tokens;
+	}
+}
@@ -0,0 +1,84 @@
+package org.easy.search.analysis;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.junit.Test;
+
+/**
+ * 检查过滤器稳定运行后每个输入词元的内存分配
+ */
+public class PinyinTransformTokenFilterAllocationTest {
+
+	/**
+	 * 每个输入词元允许的平均分配字节数，只为容纳每轮新建StringReader等固定开销
+	 */
+	private static final double MAX_BYTES_PER_TOKEN = 8;
+
+	private static final String TEXT = "中华人民共和国 银行 重庆 行长 科华万象 音乐 长城 hello 天气不错 重量 快乐 行走 朝阳 ";
+
+	/**
+	 * TEXT中的词元个数
+	 */
+	private static final int TEXT_TOKENS = 13;
+
+	private static final int REPEAT = 100;
+
+	@Test
+	public void testSteadyStateAllocation() throws IOException {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < REPEAT; i++) {
+			sb.append(TEXT);
+		}
+		String text = sb.toString();
+
+		java.util.Map<String, String> params = new java.util.HashMap<String, String>();
+		params.put("outputFormat", "both");
+		params.put("mixShort", "3");
+		params.put("dict", "pinyin_dict.txt");
+		PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+		factory.inform(new ClasspathResourceLoader(getClass().getClassLoader()));
+
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		PinyinTransformTokenFilter filter = (PinyinTransformTokenFilter) factory.create(tokenizer);
+
+		// 预热
+		for (int i = 0; i < 200; i++) {
+			consume(tokenizer, filter, text);
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < 200; i++) {
+			consume(tokenizer, filter, text);
+		}
+		long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+		double bytesPerToken = (double) allocated / (200L * REPEAT * TEXT_TOKENS);
+		assertTrue("allocated " + bytesPerToken + " bytes per token", bytesPerToken <= MAX_BYTES_PER_TOKEN);
+	}
+
+	private static void consume(Tokenizer tokenizer, PinyinTransformTokenFilter filter, String text)
+			throws IOException {
+		tokenizer.setReader(new StringReader(text));
+		filter.reset();
+		while (filter.incrementToken()) {
+			// 只消费
+		}
+		filter.end();
+		filter.close();
+	}
+}
@@ -1,15 +1,48 @@
 package org.easy.search.analysis;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.apache.lucene.analysis.util.FilesystemResourceLoader;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+
+import org.easy.search.analysis.PinyinTransformTokenFilter.OutputFormat;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -48,4 +81,453 @@ public class PinyinTransformTokenFilterFactoryTest {
 
 	}
 
+	@Test
+	public void testMaxVariants() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputFormat", "full");
+		params.put("outOriginal", "false");
+		params.put("maxVariants", "2");
+		PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+
+		// 行 xing/hang/heng 长 zhang/chang，共6种组合，常用读音优先保留2种
+		assertEquals(Arrays.asList("xingzhang", "xingchang"), terms(factory, "行长"));
+		assertEquals(1, factory.getTruncatedCount());
+
+		// 长 zhang/chang 行 xing/hang/heng 乐 le/yue，按读音排名之和输出，各字都换到第二读音之前不会用到第三读音
+		params = new HashMap<String, String>();
+		params.put("outputFormat", "full");
+		params.put("outOriginal", "false");
+		params.put("maxVariants", "4");
+		factory = new PinyinTransformTokenFilterFactory(params);
+		assertEquals(Arrays.asList("zhangxingle", "zhangxingyue", "zhanghangle", "changxingle"),
+				terms(factory, "长行乐"));
+		params = new HashMap<String, String>();
+		params.put("outputFormat", "full");
+		params.put("outOriginal", "false");
+		params.put("maxVariants", "7");
+		factory = new PinyinTransformTokenFilterFactory(params);
+		assertEquals(Arrays.asList("zhangxingle", "zhangxingyue", "zhanghangle", "changxingle", "zhanghangyue",
+				"zhanghengle", "changxingyue"), terms(factory, "长行乐"));
+
+		params = new HashMap<String, String>();
+		params.put("outputFormat", "full");
+		params.put("outOriginal", "false");
+		params.put("maxReadings", "1");
+		factory = new PinyinTransformTokenFilterFactory(params);
+		assertEquals(Arrays.asList("xingzhang"), terms(factory, "行长"));
+		assertEquals(1, factory.getTruncatedCount());
+		assertEquals(Arrays.asList("zhongguo"), terms(factory, "中国"));
+		assertEquals(1, factory.getTruncatedCount());
+	}
+
+	@Test
+	public void testDictionary() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputFormat", "full");
+		params.put("outOriginal", "false");
+		params.put("minTerm", "1");
+		params.put("dict", "pinyin_dict.txt");
+		PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+		factory.inform(new ClasspathResourceLoader(getClass().getClassLoader()));
+
+		assertEquals(Arrays.asList("yinhang"), terms(factory, "银行"));
+		assertEquals(Arrays.asList("chongqingyinhang"), terms(factory, "重庆银行"));
+		assertEquals(Arrays.asList("lu:se"), terms(factory, "绿色"));
+		// 词典外的字逐字转换
+		assertEquals(Arrays.asList("xingyinhang", "hangyinhang", "hengyinhang"), terms(factory, "行银行"));
+	}
+
+	@Test
+	public void testReloadDictionary() throws IOException {
+		Path dir = Files.createTempDirectory("pinyin_dict");
+		Path dict = dir.resolve("dict.txt");
+		Files.write(dict, "银行 yin hang".getBytes(StandardCharsets.UTF_8));
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputFormat", "full");
+		params.put("outOriginal", "false");
+		params.put("minTerm", "1");
+		params.put("cacheSize", "16");
+		params.put("dict", "dict.txt");
+		PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+		factory.inform(new FilesystemResourceLoader(dir));
+		assertEquals(Arrays.asList("yinhang"), terms(factory, "银行"));
+
+		// 已创建的词元流在重新加载后继续使用
+		MockTokenizer tokenizer = new MockTokenizer();
+		tokenizer.setReader(new StringReader("银行"));
+		TokenStream stream = factory.create(tokenizer);
+		Files.write(dict, "银行 yin xing".getBytes(StandardCharsets.UTF_8));
+		assertTrue(factory.reloadDictionary());
+		// 缓存中旧词典的结果不再命中
+		assertEquals(Arrays.asList("yinxing"), terms(factory, "银行"));
+		CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+		stream.reset();
+		assertTrue(stream.incrementToken());
+		assertEquals("yinxing", termAtt.toString());
+		assertFalse(stream.incrementToken());
+		stream.end();
+		stream.close();
+
+		// 格式错误时保留原词典
+		Files.write(dict, "银行 yin".getBytes(StandardCharsets.UTF_8));
+		try {
+			factory.reloadDictionary();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(Arrays.asList("yinxing"), terms(factory, "银行"));
+		assertFalse(new PinyinTransformTokenFilterFactory(new HashMap<String, String>()).reloadDictionary());
+	}
+
+	@Test
+	public void testCache() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputFormat", "both");
+		params.put("mixShort", "2");
+		params.put("maxVariants", "3");
+		PinyinTransformTokenFilterFactory plain = new PinyinTransformTokenFilterFactory(
+				new HashMap<String, String>(params));
+		params.put("cacheSize", "100");
+		PinyinTransformTokenFilterFactory cached = new PinyinTransformTokenFilterFactory(params);
+
+		String text = "中华人民共和国 行长 hello 行长 重庆银行 中华人民共和国";
+		List<String> expected = terms(plain, text);
+		assertEquals(expected, terms(cached, text));
+		assertEquals(expected, terms(cached, text));
+		PinyinExpansionCache cache = cached.getCache();
+		assertEquals(3, cache.size());
+		assertEquals(3, cache.getMissCount());
+		assertEquals(7, cache.getHitCount());
+		assertEquals(plain.getTruncatedCount() * 2, cached.getTruncatedCount());
+	}
+
+	@Test
+	public void testReloadChecksFileTimeFirst() throws IOException {
+		Path dir = Files.createTempDirectory("pinyin_dict");
+		Path dict = dir.resolve("dict.txt");
+		try {
+			Files.write(dict, "银行 yin hang".getBytes(StandardCharsets.UTF_8));
+			FileTime time = Files.getLastModifiedTime(dict);
+			ReloadablePinyinWordDictionary dictionary = new ReloadablePinyinWordDictionary(
+					new FilesystemResourceLoader(dir), dict.toString(), PinyinTransformTokenFilterFactory.DICT_FORMAT_TEXT,
+					null);
+			assertFalse(dictionary.reload(false));
+
+			// 大小和修改时间都未变化时不读取文件内容
+			Files.write(dict, "银行 yin xing".getBytes(StandardCharsets.UTF_8));
+			Files.setLastModifiedTime(dict, time);
+			assertFalse(dictionary.reload(false));
+			assertEquals(0, dictionary.getReloadCount());
+
+			Files.setLastModifiedTime(dict, FileTime.fromMillis(time.toMillis() + 1000));
+			assertTrue(dictionary.reload(false));
+			assertEquals(1, dictionary.getReloadCount());
+			// 只有修改时间变化时内容相同，不重新加载
+			Files.setLastModifiedTime(dict, FileTime.fromMillis(time.toMillis() + 2000));
+			assertFalse(dictionary.reload(false));
+		} finally {
+			Files.deleteIfExists(dict);
+			Files.deleteIfExists(dir);
+		}
+	}
+
+	@Test
+	public void testGraph() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputFormat", "both");
+		params.put("graph", "true");
+		PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+		// 词元/位置增量/位置长度，每个汉字的读音并列在同一位置，原词元跨越全部位置
+		assertEquals(Arrays.asList("重庆/1/2", "zhong/0/1", "chong/0/1", "z/0/1", "c/0/1", "qing/1/1", "q/0/1",
+				"hello/1/1", "阿姨/1/2", "a/0/1", "e/0/1", "yi/1/1", "y/0/1"), graph(factory, "重庆 hello 阿姨"));
+
+		params = new HashMap<String, String>();
+		params.put("outputFormat", "short");
+		params.put("outOriginal", "false");
+		params.put("graph", "true");
+		factory = new PinyinTransformTokenFilterFactory(params);
+		assertEquals(Arrays.asList("z/1/1", "c/0/1", "q/1/1", "y/1/1", "x/1/1", "h/0/1"),
+				graph(factory, "重庆 hello 银行"));
+	}
+
+	@Test
+	public void testSyllableFormat() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputFormat", "syllable");
+		final PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+		assertEquals(Arrays.asList("银行/1/2", "yin/0/1", "xing/1/1", "hang/0/1", "heng/0/1", "hello/1/1"),
+				graph(factory, "银行 hello"));
+
+		// 每个音节一个位置，以短语查询匹配
+		Analyzer analyzer = new Analyzer() {
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer tokenizer = new WhitespaceTokenizer();
+				return new TokenStreamComponents(tokenizer, factory.create(tokenizer));
+			}
+		};
+		Directory directory = new RAMDirectory();
+		IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+		Document doc = new Document();
+		doc.add(new TextField("title", "重庆 银行 长大", Field.Store.NO));
+		writer.addDocument(doc);
+		writer.close();
+		IndexSearcher searcher = new IndexSearcher(DirectoryReader.open(directory));
+		assertEquals(1, searcher.count(new PhraseQuery("title", "yin", "hang")));
+		assertEquals(1, searcher.count(new PhraseQuery("title", "chong", "qing", "yin", "hang")));
+		assertEquals(1, searcher.count(new PhraseQuery("title", "hang", "zhang", "da")));
+		assertEquals(0, searcher.count(new PhraseQuery("title", "yin", "qing")));
+		searcher.getIndexReader().close();
+		directory.close();
+	}
+
+	@Test
+	public void testGraphWithoutReadings() throws IOException {
+		// 没有读音的汉字不转换，原词元的位置长度保持为1
+		for (String format : new String[] { "both", "syllable" }) {
+			Map<String, String> params = new HashMap<String, String>();
+			params.put("outputFormat", format);
+			params.put("graph", "true");
+			PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+			List<String> tokens = graph(factory, "\ud840\udc00\ud840\udc01 中国");
+			assertEquals("\ud840\udc00\ud840\udc01/1/1", tokens.get(0));
+			assertEquals("中国/1/2", tokens.get(1));
+		}
+	}
+
+	@Test
+	public void testSyllableFormatIgnoresCache() throws IOException {
+		// 按音节输出不使用缓存，直接传入缓存时也不影响输出
+		PinyinExpansionCache cache = new PinyinExpansionCache(100);
+		for (int i = 0; i < 2; i++) {
+			MockTokenizer tokenizer = new MockTokenizer();
+			tokenizer.setReader(new StringReader("银行 银行"));
+			TokenStream stream = new PinyinTransformTokenFilter(tokenizer,
+					new PinyinTransformOptions().setOutputFormat(OutputFormat.SYLLABLE).setCache(cache));
+			assertEquals(Arrays.asList("银行/1/2", "yin/0/1", "xing/1/1", "hang/0/1", "heng/0/1", "银行/1/2", "yin/0/1",
+					"xing/1/1", "hang/0/1", "heng/0/1"), graph(stream));
+		}
+		assertEquals(0, cache.size());
+	}
+
+	private static List<String> graph(PinyinTransformTokenFilterFactory factory, String text) throws IOException {
+		MockTokenizer tokenizer = new MockTokenizer();
+		tokenizer.setReader(new StringReader(text));
+		return graph(factory.create(tokenizer));
+	}
+
+	private static List<String> graph(TokenStream stream) throws IOException {
+		CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+		PositionIncrementAttribute posIncrAtt = stream.addAttribute(PositionIncrementAttribute.class);
+		PositionLengthAttribute posLenAtt = stream.addAttribute(PositionLengthAttribute.class);
+		List<String> tokens = new ArrayList<String>();
+		stream.reset();
+		while (stream.incrementToken()) {
+			tokens.add(termAtt + "/" + posIncrAtt.getPositionIncrement() + "/" + posLenAtt.getPositionLength());
+		}
+		stream.end();
+		stream.close();
+		return tokens;
+	}
+
+	@Test
+	public void testFuzzy() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputFormat", "both");
+		params.put("outOriginal", "false");
+		params.put("fuzzy", PinyinFuzzyRules.DEFAULT_RULES);
+		PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+		// shanghai与sanghai、liunai与niunai归并为相同的规范拼写
+		assertEquals(Arrays.asList("sh", "sanhai"), terms(factory, "上海"));
+		assertEquals(terms(factory, "上海"), terms(factory, "桑海"));
+		assertEquals(Arrays.asList("nn", "niunai"), terms(factory, "刘奶"));
+		assertEquals(terms(factory, "刘奶"), terms(factory, "牛奶"));
+
+		// 查询端切分输入的拼音使用相同规则
+		Map<String, String> segmentParams = new HashMap<String, String>();
+		segmentParams.put("maxSegmentations", "1");
+		segmentParams.put("outOriginal", "false");
+		segmentParams.put("fuzzy", PinyinFuzzyRules.DEFAULT_RULES);
+		MockTokenizer tokenizer = new MockTokenizer();
+		tokenizer.setReader(new StringReader("shanghai lh"));
+		TokenStream stream = new PinyinSegmentTokenFilterFactory(segmentParams).create(tokenizer);
+		CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+		List<String> terms = new ArrayList<String>();
+		stream.reset();
+		while (stream.incrementToken()) {
+			terms.add(termAtt.toString());
+		}
+		stream.end();
+		stream.close();
+		assertEquals(Arrays.asList("san", "hai", "n", "h"), terms);
+	}
+
+	@Test
+	public void testFuzzyFinalAfterMedial() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputFormat", "both");
+		params.put("outOriginal", "false");
+		params.put("minTerm", "1");
+		params.put("fuzzy", PinyinFuzzyRules.DEFAULT_RULES);
+		PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+		// an=ang同样作用于介音之后的韵尾：jiang与jian、guang与guan归并
+		assertEquals(Arrays.asList("j", "jian"), terms(factory, "江"));
+		assertEquals(terms(factory, "江"), terms(factory, "坚"));
+		assertEquals(Arrays.asList("g", "guan"), terms(factory, "光"));
+		assertEquals(terms(factory, "光"), terms(factory, "关"));
+
+		PinyinFuzzyRules rules = PinyinFuzzyRules.parse(PinyinFuzzyRules.DEFAULT_RULES);
+		assertEquals("xian", rules.canonicalize("xiang"));
+		assertEquals("suan", rules.canonicalize("shuang"));
+		assertEquals("nian", rules.canonicalize("liang"));
+		// in=ing不误作用于ian
+		assertEquals("jian", rules.canonicalize("jian"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidFuzzyRule() {
+		PinyinFuzzyRules.parse("z=an");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFuzzyInitialConflict() {
+		// 单字母音节n（嗯）不变而na归并为la，简拼首字母n的规范首字母不确定
+		PinyinFuzzyRules.parse("l=n");
+	}
+
+	@Test
+	public void testFuzzyQuerySide() throws IOException {
+		PinyinFuzzyRules rules = PinyinFuzzyRules.parse("r=l");
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputFormat", "both");
+		params.put("outOriginal", "false");
+		params.put("binary", "true");
+		params.put("fuzzy", "r=l");
+		List<String> indexTerms = terms(new PinyinTransformTokenFilterFactory(params), "刘海");
+		assertEquals("r h", PinyinSyllableCodec.decode(indexTerms.get(0)));
+
+		// 查询端直接编码
+		assertEquals(indexTerms.get(0), PinyinSyllableCodec.encode("l h", rules));
+		assertEquals(indexTerms.get(1), PinyinSyllableCodec.encode("liu hai", rules));
+
+		// 查询端切分输入的拼音，简拼首字母同样归并
+		Map<String, String> segmentParams = new HashMap<String, String>();
+		segmentParams.put("outOriginal", "false");
+		segmentParams.put("fuzzy", "r=l");
+		assertEquals(Arrays.asList("riu", "hai", "r", "h"),
+				terms(new PinyinSegmentTokenFilterFactory(segmentParams), "liuhai lh"));
+		segmentParams = new HashMap<String, String>();
+		segmentParams.put("outOriginal", "false");
+		segmentParams.put("binary", "true");
+		segmentParams.put("fuzzy", "r=l");
+		List<String> queryTerms = terms(new PinyinSegmentTokenFilterFactory(segmentParams), "liuhai lh");
+		assertEquals(indexTerms.get(1), queryTerms.get(0));
+		assertEquals(indexTerms.get(0), queryTerms.get(queryTerms.size() - 1));
+
+		// 正文转换
+		Reader reader = new PinyinCharFilter(new StringReader("刘海"), " ", rules);
+		StringBuilder text = new StringBuilder();
+		int c;
+		while ((c = reader.read()) >= 0) {
+			text.append((char) c);
+		}
+		reader.close();
+		assertEquals("riu hai", text.toString());
+	}
+
+	@Test
+	public void testBinary() throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("outputFormat", "both");
+		params.put("outOriginal", "false");
+		params.put("binary", "true");
+		params.put("cacheSize", "16");
+		PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+		// 第二次命中缓存
+		for (int i = 0; i < 2; i++) {
+			List<String> terms = terms(factory, "中国人");
+			assertEquals(2, terms.size());
+			assertEquals("z g r", PinyinSyllableCodec.decode(terms.get(0)));
+			assertEquals("zhong guo ren", PinyinSyllableCodec.decode(terms.get(1)));
+			// 每个音节9位，每个字符7位且UTF-8编码为一个字节
+			assertEquals(4, terms.get(1).length());
+			for (char c : terms.get(1).toCharArray()) {
+				assertTrue(c < 0x80);
+			}
+			assertEquals(PinyinSyllableCodec.encode("zhong guo ren", null), terms.get(1));
+		}
+
+		// 查询端切分输入的拼音后编码，与索引端相同
+		Map<String, String> segmentParams = new HashMap<String, String>();
+		segmentParams.put("outOriginal", "false");
+		segmentParams.put("binary", "true");
+		MockTokenizer tokenizer = new MockTokenizer();
+		tokenizer.setReader(new StringReader("zhongguoren zgr"));
+		TokenStream stream = new PinyinSegmentTokenFilterFactory(segmentParams).create(tokenizer);
+		CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+		List<String> queryTerms = new ArrayList<String>();
+		stream.reset();
+		while (stream.incrementToken()) {
+			queryTerms.add(termAtt.toString());
+		}
+		stream.end();
+		stream.close();
+		assertEquals(terms(factory, "中国人").get(1), queryTerms.get(0));
+		assertEquals(terms(factory, "中国人").get(0), queryTerms.get(queryTerms.size() - 1));
+		assertEquals("nu:e a", PinyinSyllableCodec.decode(PinyinSyllableCodec.encode("nu:e a", null)));
+	}
+
+	@Test
+	public void testWarmup() throws IOException, InterruptedException {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("warmup", "sync");
+		PinyinTransformTokenFilterFactory factory = new PinyinTransformTokenFilterFactory(params);
+		factory.inform(new ClasspathResourceLoader(getClass()));
+		assertTrue(PinyinCharTable.warmUp().isDone());
+		// 同一JVM内只预加载一次
+		assertTrue(PinyinCharTable.warmUp() == PinyinCharTable.warmUp());
+		// 预加载线程在本测试中启动时，等待其结束，避免被判为线程泄漏
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if ("pinyin-table-warmup".equals(thread.getName())) {
+				thread.join();
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidWarmup() {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("warmup", "later");
+		new PinyinTransformTokenFilterFactory(params);
+	}
+
+	@Test
+	public void testChineseCodePoints() {
+		assertTrue(PinyinTransformTokenFilter.isChinese('中'));
+		assertTrue(PinyinTransformTokenFilter.isChinese(0x20BB7));
+		assertFalse(PinyinTransformTokenFilter.isChinese('a'));
+		assertFalse(PinyinTransformTokenFilter.isChinese('，'));
+		assertFalse(PinyinTransformTokenFilter.isChinese(Character.MAX_CODE_POINT + 1));
+		// 扩展B区的𠮷为一个代理对
+		String name = "吉\ud842\udfb7a，";
+		assertEquals(2, PinyinTransformTokenFilter.countChineseChar(name));
+		assertEquals(2, PinyinTransformTokenFilter.countChineseChar(name.toCharArray(), 0, name.length()));
+		assertEquals(0, PinyinTransformTokenFilter.countChineseChar(name.toCharArray(), 2, 2));
+	}
+
+	private static List<String> terms(TokenFilterFactory factory, String text) throws IOException {
+		MockTokenizer tokenizer = new MockTokenizer();
+		tokenizer.setReader(new StringReader(text));
+		TokenStream filter = factory.create(tokenizer);
+		List<String> terms = new ArrayList<String>();
+		filter.reset();
+		while (filter.incrementToken()) {
+			terms.add(filter.getAttribute(CharTermAttribute.class).toString());
+		}
+		filter.end();
+		filter.close();
+		return terms;
+	}
+
 }
@@ -0,0 +1,157 @@
+package org.easy.search.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.junit.Test;
+
+public class PinyinUpdateProcessorFactoryTest {
+
+	@Test
+	public void testTargetFields() throws IOException {
+		NamedList<Object> args = new NamedList<Object>();
+		args.add("source", "title");
+		args.add("fullField", "title_full");
+		args.add("shortField", "title_short");
+		args.add("mixedField", "title_mixed");
+		args.add("allField", "title_pinyin");
+		args.add("mixShort", 2);
+		PinyinUpdateProcessorFactory factory = new PinyinUpdateProcessorFactory();
+		factory.init(args);
+
+		SolrInputDocument doc = new SolrInputDocument();
+		doc.addField("title", "中国人");
+		doc.addField("title", "人民");
+		doc.addField("title", "hello");
+		process(factory, doc);
+		// 来源字段的每个值转换一次，各拼音以空格连接
+		assertEquals(Arrays.asList("zhongguoren", "renmin"), doc.getFieldValues("title_full"));
+		assertEquals(Arrays.asList("zgr", "rm"), doc.getFieldValues("title_short"));
+		assertEquals(Arrays.asList("zguoren zgren"), doc.getFieldValues("title_mixed"));
+		assertEquals(Arrays.asList("zgr zhongguoren zguoren zgren", "rm renmin"), doc.getFieldValues("title_pinyin"));
+	}
+
+	@Test
+	public void testMixedFieldIndependentOfTargets() throws IOException {
+		// 混合拼音不随同时配置的其他目标字段变化
+		for (String[] targets : new String[][] { { "fullField" }, { "fullField", "shortField" },
+				{ "fullField", "shortField", "allField" } }) {
+			NamedList<Object> args = new NamedList<Object>();
+			args.add("source", "title");
+			args.add("mixedField", "title_mixed");
+			for (String target : targets) {
+				args.add(target, "title_" + target);
+			}
+			args.add("mixShort", 2);
+			PinyinUpdateProcessorFactory factory = new PinyinUpdateProcessorFactory();
+			factory.init(args);
+			SolrInputDocument doc = new SolrInputDocument();
+			doc.addField("title", "中国人");
+			doc.addField("title", "人民");
+			process(factory, doc);
+			assertEquals(Arrays.toString(targets), Arrays.asList("zguoren zgren"), doc.getFieldValues("title_mixed"));
+			assertEquals(Arrays.asList("zhongguoren", "renmin"), doc.getFieldValues("title_fullField"));
+		}
+	}
+
+	@Test
+	public void testMixShortWithoutMixedTarget() throws IOException {
+		NamedList<Object> args = new NamedList<Object>();
+		args.add("source", "title");
+		args.add("fullField", "title_full");
+		args.add("mixShort", 2);
+		args.add("maxVariants", 1);
+		PinyinUpdateProcessorFactory factory = new PinyinUpdateProcessorFactory();
+		factory.init(args);
+		SolrInputDocument doc = new SolrInputDocument();
+		doc.addField("title", "中国人");
+		process(factory, doc);
+		assertEquals(Arrays.asList("zhongguoren"), doc.getFieldValues("title_full"));
+	}
+
+	@Test
+	public void testAtomicUpdate() throws IOException {
+		NamedList<Object> args = new NamedList<Object>();
+		args.add("source", "title");
+		args.add("fullField", "title_full");
+		args.add("shortField", "title_short");
+		PinyinUpdateProcessorFactory factory = new PinyinUpdateProcessorFactory();
+		factory.init(args);
+
+		// set、add转换为目标字段的相同操作，每个值分别转换
+		SolrInputDocument doc = new SolrInputDocument();
+		doc.addField("id", "1");
+		doc.addField("title", Collections.singletonMap("add", Arrays.asList("中国", "人民")));
+		process(factory, doc);
+		assertEquals(Collections.singletonMap("add", Arrays.asList("zhongguo", "renmin")),
+				doc.getFieldValue("title_full"));
+		assertEquals(Collections.singletonMap("add", Arrays.asList("zg", "rm")), doc.getFieldValue("title_short"));
+
+		doc = new SolrInputDocument();
+		doc.addField("id", "1");
+		doc.addField("title", Collections.singletonMap("set", "人民"));
+		process(factory, doc);
+		assertEquals(Collections.singletonMap("set", Arrays.asList("renmin")), doc.getFieldValue("title_full"));
+
+		// 没有可转换的值时清空目标字段
+		doc = new SolrInputDocument();
+		doc.addField("id", "1");
+		doc.addField("title", Collections.singletonMap("set", "hello"));
+		process(factory, doc);
+		assertEquals(Collections.singletonMap("set", null), doc.getFieldValue("title_full"));
+
+		doc = new SolrInputDocument();
+		doc.addField("id", "1");
+		doc.addField("title", Collections.singletonMap("remove", "人民"));
+		try {
+			process(factory, doc);
+			fail();
+		} catch (SolrException e) {
+			assertEquals(SolrException.ErrorCode.BAD_REQUEST.code, e.code());
+		}
+		assertNull(doc.getFieldValues("title_full"));
+	}
+
+	@Test
+	public void testMissingSource() throws IOException {
+		NamedList<Object> args = new NamedList<Object>();
+		args.add("source", "title");
+		args.add("fullField", "title_full");
+		PinyinUpdateProcessorFactory factory = new PinyinUpdateProcessorFactory();
+		factory.init(args);
+		SolrInputDocument doc = new SolrInputDocument();
+		doc.addField("id", "1");
+		process(factory, doc);
+		assertNull(doc.getFieldValues("title_full"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownParameter() {
+		NamedList<Object> args = new NamedList<Object>();
+		args.add("source", "title");
+		args.add("fullField", "title_full");
+		args.add("target", "title_pinyin");
+		new PinyinUpdateProcessorFactory().init(args);
+	}
+
+	private static void process(PinyinUpdateProcessorFactory factory, SolrInputDocument doc) throws IOException {
+		UpdateRequestProcessor last = new UpdateRequestProcessor(null) {
+			@Override
+			public void processAdd(AddUpdateCommand cmd) {
+			}
+		};
+		AddUpdateCommand cmd = new AddUpdateCommand(null);
+		cmd.solrDoc = doc;
+		factory.getInstance(null, null, last).processAdd(cmd);
+	}
+}